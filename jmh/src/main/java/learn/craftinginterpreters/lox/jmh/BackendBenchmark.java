@@ -0,0 +1,61 @@
+package learn.craftinginterpreters.lox.jmh;
+
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import learn.craftinginterpreters.lox.CompiledScript;
+import learn.craftinginterpreters.lox.ErrorReporter;
+import learn.craftinginterpreters.lox.LoxContext;
+import learn.craftinginterpreters.lox.LoxEngine;
+import learn.craftinginterpreters.lox.interpreter.Output;
+
+/**
+ * Execution of a script compiled once, on each backend, in a fresh
+ * {@link LoxContext}. Printed output is discarded.
+ *
+ * The JIT backend compiles the script after a thousand runs, then the JVM
+ * compiles the generated classes in turn: give it a long warmup, such as
+ * {@code -wi 60}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BackendBenchmark {
+
+	@Param({ "INTERPRETER", "VM", "CLOSURES", "JIT" })
+	LoxEngine.Backend backend;
+
+	@Param({ "1000", "10000" })
+	int statements;
+
+	LoxEngine engine;
+	CompiledScript script;
+
+	@Setup
+	public void setup() {
+		engine = new LoxEngine(backend);
+		script = engine.compile(Scripts.generate(statements, false));
+	}
+
+	@Benchmark
+	public LoxContext run() {
+		LoxContext context = engine.createContext(new Output(Writer.nullWriter()), ErrorReporter.STANDARD_ERROR);
+		context.run(script);
+		return context;
+	}
+}
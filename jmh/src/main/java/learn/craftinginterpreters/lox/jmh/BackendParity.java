@@ -0,0 +1,103 @@
+package learn.craftinginterpreters.lox.jmh;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import learn.craftinginterpreters.lox.CompiledScript;
+import learn.craftinginterpreters.lox.LoxContext;
+import learn.craftinginterpreters.lox.LoxEngine;
+import learn.craftinginterpreters.lox.interpreter.Output;
+import learn.craftinginterpreters.lox.jit.TieredScript;
+
+/**
+ * Check that every backend prints the same output and reports the same errors
+ * as the interpreter on a corpus of scripts, both streamed and compiled.
+ *
+ * Usage: {@code java -cp jmh/target/benchmarks.jar
+ * learn.craftinginterpreters.lox.jmh.BackendParity [directory]}, the directory
+ * defaulting to test/lox. Exits with 1 when a backend differs.
+ */
+public final class BackendParity {
+
+	private BackendParity() {
+	}
+
+	public static void main(String[] args) throws IOException {
+		Path corpus = Paths.get(args.length > 0 ? args[0] : "test/lox");
+		List<Path> scripts;
+		try (Stream<Path> files = Files.walk(corpus)) {
+			scripts = files.filter(file -> file.toString().endsWith(".lox")).sorted().collect(Collectors.toList());
+		}
+		if (scripts.isEmpty()) {
+			System.err.println("No script found in " + corpus);
+			System.exit(1);
+		}
+
+		int mismatches = 0;
+		for (Path script : scripts) {
+			String source = new String(Files.readAllBytes(script), StandardCharsets.UTF_8);
+			String expected = run(LoxEngine.Backend.INTERPRETER, source, false);
+			for (LoxEngine.Backend backend : LoxEngine.Backend.values()) {
+				for (boolean compiled : new boolean[] { false, true }) {
+					String actual = run(backend, source, compiled);
+					if (!actual.equals(expected)) {
+						mismatches++;
+						System.err.println(script + " differs on " + backend + (compiled ? " compiled" : "")
+								+ ":\n--- expected\n" + expected + "--- actual\n" + actual);
+					}
+				}
+			}
+		}
+		System.out.println(scripts.size() + " scripts, " + LoxEngine.Backend.values().length + " backends, "
+				+ mismatches + " mismatches");
+		System.exit(mismatches == 0 ? 0 : 1);
+	}
+
+	/**
+	 * @return the standard output then the standard error of the script
+	 */
+	private static String run(LoxEngine.Backend backend, String source, boolean compiled) {
+		LoxEngine engine = new LoxEngine(backend);
+		StringWriter out = new StringWriter();
+		StringWriter err = new StringWriter();
+		CompiledScript script = null;
+		if (compiled) {
+			try {
+				script = engine.compile(source);
+			} catch (RuntimeException e) {
+				return "stdout:\nstderr:\nCrashed: " + e.getClass().getName() + "\n";
+			}
+		}
+		// the JIT backend only executes bytecode once the script got hot
+		int runs = compiled && backend == LoxEngine.Backend.JIT ? TieredScript.COMPILE_THRESHOLD + 1 : 1;
+		for (int i = 0; i < runs; i++) {
+			out.getBuffer().setLength(0);
+			err.getBuffer().setLength(0);
+			LoxContext context = engine.createContext(new Output(out), (line, message) -> {
+				if (line >= 0) {
+					err.write("[" + line + "] Error: " + message + "\n");
+				} else {
+					err.write(message + "\n");
+				}
+			});
+			try {
+				if (compiled) {
+					context.run(script);
+				} else {
+					context.run(source);
+				}
+			} catch (RuntimeException e) {
+				err.write("Crashed: " + e.getClass().getName() + "\n");
+			}
+			context.getOutput().flush();
+		}
+		return "stdout:\n" + out + "stderr:\n" + err;
+	}
+}
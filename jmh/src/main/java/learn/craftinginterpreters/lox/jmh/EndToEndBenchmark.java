@@ -0,0 +1,77 @@
+package learn.craftinginterpreters.lox.jmh;
+
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import learn.craftinginterpreters.lox.CompiledScript;
+import learn.craftinginterpreters.lox.ErrorReporter;
+import learn.craftinginterpreters.lox.LoxContext;
+import learn.craftinginterpreters.lox.LoxEngine;
+import learn.craftinginterpreters.lox.ScriptCache;
+import learn.craftinginterpreters.lox.interpreter.Output;
+
+/**
+ * Run whole scripts of increasing size in a fresh {@link LoxContext}, alone and
+ * on every core at once, from source or from a {@link ScriptCache}. Printed
+ * output is discarded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EndToEndBenchmark {
+
+	@Param({ "100", "1000", "10000" })
+	int statements;
+
+	LoxEngine engine;
+	ScriptCache cache;
+	String source;
+
+	@Setup
+	public void setup() {
+		engine = new LoxEngine();
+		cache = new ScriptCache(engine, 16, 1 << 24);
+		source = Scripts.generate(statements, true);
+	}
+
+	@Benchmark
+	public LoxContext run() {
+		LoxContext context = newContext();
+		context.run(source);
+		return context;
+	}
+
+	@Benchmark
+	public LoxContext runCached() {
+		CompiledScript script = cache.get(source);
+		LoxContext context = newContext();
+		context.run(script);
+		return context;
+	}
+
+	private LoxContext newContext() {
+		return engine.createContext(new Output(Writer.nullWriter()), ErrorReporter.STANDARD_ERROR);
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public LoxContext runConcurrently() {
+		return run();
+	}
+}
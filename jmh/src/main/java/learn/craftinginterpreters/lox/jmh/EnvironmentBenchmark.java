@@ -0,0 +1,111 @@
+package learn.craftinginterpreters.lox.jmh;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import learn.craftinginterpreters.lox.interpreter.Environment;
+import learn.craftinginterpreters.lox.interpreter.Interpreter;
+import learn.craftinginterpreters.lox.interpreter.SlotEnvironment;
+import learn.craftinginterpreters.lox.lexer.Symbol;
+import learn.craftinginterpreters.lox.parser.Stmt;
+
+/**
+ * Variable lookups through scopes nested at increasing depths.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnvironmentBenchmark {
+
+	@Param({ "0", "1", "4", "16" })
+	int depth;
+
+	SlotEnvironment locals;
+	Environment globals;
+	Symbol name;
+
+	Interpreter interpreter;
+	// nested blocks reading a local of the outermost one
+	Stmt block;
+	// nested blocks declaring nothing, reading a global
+	Stmt bareBlock;
+
+	@Setup
+	public void setup() {
+		locals = new SlotEnvironment(null, 1);
+		locals.init(0, 1.0);
+		for (int i = 0; i < depth; i++) {
+			locals = new SlotEnvironment(locals, 1);
+			locals.init(0, 2.0);
+		}
+
+		name = Symbol.intern("g");
+		globals = new Environment();
+		for (int i = 0; i < 64; i++) {
+			globals.init(Symbol.intern("g" + i), (double) i);
+		}
+		globals.init(name, 1.0);
+
+		StringBuilder sb = new StringBuilder("{ var v = 1;");
+		for (int i = 0; i < depth; i++) {
+			sb.append(" { var v").append(i).append(" = 2;");
+		}
+		for (int i = 0; i < 16; i++) {
+			sb.append(" v;");
+		}
+		for (int i = 0; i <= depth; i++) {
+			sb.append(" }");
+		}
+		interpreter = new Interpreter();
+		block = Scripts.compile(sb.toString()).get(0);
+
+		sb = new StringBuilder("var g = 1; {");
+		for (int i = 0; i < depth; i++) {
+			sb.append(" {");
+		}
+		for (int i = 0; i < 16; i++) {
+			sb.append(" g;");
+		}
+		for (int i = 0; i <= depth; i++) {
+			sb.append(" }");
+		}
+		List<Stmt> statements = Scripts.compile(sb.toString());
+		statements.get(0).accept(interpreter);
+		bareBlock = statements.get(1);
+	}
+
+	@Benchmark
+	public Object slotLookup() {
+		return locals.getValue(depth, 0);
+	}
+
+	@Benchmark
+	public Object globalLookup() {
+		return globals.getValue(name);
+	}
+
+	@Benchmark
+	public void blockReads() {
+		block.accept(interpreter);
+	}
+
+	@Benchmark
+	public void bareBlockReads() {
+		bareBlock.accept(interpreter);
+	}
+}
@@ -0,0 +1,54 @@
+package learn.craftinginterpreters.lox.jmh;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import learn.craftinginterpreters.lox.ErrorReporter;
+import learn.craftinginterpreters.lox.lexer.Lexer;
+import learn.craftinginterpreters.lox.lexer.Token;
+import learn.craftinginterpreters.lox.parser.Parser;
+import learn.craftinginterpreters.lox.parser.Stmt;
+
+/**
+ * Parsing of scripts with a growing share of syntax errors, as typed by users
+ * or fuzzed. Errors are reported to a receiver discarding them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ErrorBenchmark {
+
+	// share of the statements having a syntax error, in percent
+	@Param({ "0", "10", "50", "100" })
+	int errors;
+
+	List<Token> tokens;
+	ErrorReporter ignored;
+
+	@Setup
+	public void setup() {
+		tokens = new Lexer(Scripts.generateErroneous(1000, errors)).scan();
+		ignored = (line, message) -> {
+		};
+	}
+
+	@Benchmark
+	public List<Stmt> parse() {
+		return new Parser(tokens, ignored).parse();
+	}
+}
@@ -0,0 +1,84 @@
+package learn.craftinginterpreters.lox.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import learn.craftinginterpreters.lox.interpreter.FlatEvaluator;
+import learn.craftinginterpreters.lox.interpreter.FlatExpr;
+import learn.craftinginterpreters.lox.interpreter.Interpreter;
+import learn.craftinginterpreters.lox.parser.Expr;
+import learn.craftinginterpreters.lox.parser.ExpressionStmt;
+import learn.craftinginterpreters.lox.parser.Stmt;
+
+/**
+ * Evaluation of a huge generated expression as a tree of nodes and as a
+ * {@link FlatExpr}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+// parsing and evaluating recurse as deep as the expression
+@Fork(value = 1, jvmArgsAppend = "-Xss64m")
+public class FlatExprBenchmark {
+
+	@Param({ "100", "10000" })
+	int terms;
+
+	Interpreter interpreter;
+	FlatEvaluator evaluator;
+	Expr tree;
+	FlatExpr flat;
+
+	@Setup
+	public void setup() {
+		interpreter = new Interpreter();
+		for (Stmt stmt : Scripts.compile("var a = 3; var b = 4; var s = \"lox\";")) {
+			stmt.accept(interpreter);
+		}
+		evaluator = new FlatEvaluator(interpreter);
+
+		// mixes boxed and unboxed arithmetic with comparisons
+		StringBuilder sb = new StringBuilder("0");
+		for (int i = 0; i < terms; i++) {
+			switch (i % 4) {
+			case 0:
+				sb.append(" + a * ").append(i);
+				break;
+			case 1:
+				sb.append(" - (b - ").append(i).append(") / 2");
+				break;
+			case 2:
+				sb.append(" + (a < b ? 1 : 2)");
+				break;
+			default:
+				sb.append(" + -a");
+			}
+		}
+		sb.append(";");
+		tree = ((ExpressionStmt) Scripts.compile(sb.toString(), false).get(0)).getExpression();
+		flat = FlatExpr.flatten(tree);
+	}
+
+	@Benchmark
+	public Object tree() {
+		return tree.accept(interpreter);
+	}
+
+	@Benchmark
+	public Object flat() {
+		return evaluator.evaluate(flat);
+	}
+}
@@ -0,0 +1,88 @@
+package learn.craftinginterpreters.lox.jmh;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import learn.craftinginterpreters.lox.RuntimeError;
+import learn.craftinginterpreters.lox.interpreter.Interpreter;
+import learn.craftinginterpreters.lox.parser.Expr;
+import learn.craftinginterpreters.lox.parser.ExpressionStmt;
+import learn.craftinginterpreters.lox.parser.Stmt;
+
+/**
+ * Evaluation of single expressions on an interpreter whose globals are set up.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InterpreterBenchmark {
+
+	Interpreter interpreter;
+	Expr literals;
+	Expr variables;
+	Expr strings;
+	Expr comparison;
+	Expr failing;
+
+	@Setup
+	public void setup() {
+		interpreter = new Interpreter();
+		List<Stmt> globals = Scripts.compile("var a = 3; var b = 4; var s = \"lox\";");
+		for (Stmt stmt : globals) {
+			stmt.accept(interpreter);
+		}
+		literals = expression("(1 + 2) * (3 - 4) / 5 + 6 * 7;");
+		variables = expression("(a + b) * (a - b) / 2 + a * b;");
+		strings = expression("s + \" \" + s;");
+		comparison = expression("a < b == b >= a ? a : b;");
+		failing = expression("a * -s;");
+	}
+
+	private static Expr expression(String source) {
+		// not optimized, literal arithmetic would be folded away
+		return ((ExpressionStmt) Scripts.compile(source, false).get(0)).getExpression();
+	}
+
+	@Benchmark
+	public Object literalArithmetic() {
+		return literals.accept(interpreter);
+	}
+
+	@Benchmark
+	public Object variableArithmetic() {
+		return variables.accept(interpreter);
+	}
+
+	@Benchmark
+	public Object stringConcatenation() {
+		return strings.accept(interpreter);
+	}
+
+	@Benchmark
+	public Object comparisonTernary() {
+		return comparison.accept(interpreter);
+	}
+
+	@Benchmark
+	public Object runtimeError() {
+		try {
+			return failing.accept(interpreter);
+		} catch (RuntimeError e) {
+			return e;
+		}
+	}
+}
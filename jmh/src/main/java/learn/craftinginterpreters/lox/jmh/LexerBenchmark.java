@@ -0,0 +1,62 @@
+package learn.craftinginterpreters.lox.jmh;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import learn.craftinginterpreters.lox.lexer.Lexer;
+import learn.craftinginterpreters.lox.lexer.Token;
+import learn.craftinginterpreters.lox.lexer.TokenBuffer;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LexerBenchmark {
+
+	@Param({ "100", "1000", "10000" })
+	int statements;
+
+	String source;
+	String numbers;
+
+	@Setup
+	public void setup() {
+		source = Scripts.generate(statements, true);
+		numbers = Scripts.generateNumbers(statements);
+	}
+
+	@Benchmark
+	public List<Token> scan() {
+		return new Lexer(source).scan();
+	}
+
+	@Benchmark
+	public List<Token> scanReader() {
+		return new Lexer(new StringReader(source)).scan();
+	}
+
+	@Benchmark
+	public TokenBuffer scanBuffer() {
+		return new Lexer(source).scanBuffer();
+	}
+
+	@Benchmark
+	public List<Token> scanNumbers() {
+		return new Lexer(numbers).scan();
+	}
+}
@@ -0,0 +1,64 @@
+package learn.craftinginterpreters.lox.jmh;
+
+import java.io.Writer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import learn.craftinginterpreters.lox.interpreter.DoubleFormatter;
+import learn.craftinginterpreters.lox.interpreter.Output;
+
+/**
+ * Printing numbers, integers or with a fractional part, through the
+ * {@link DoubleFormatter} into the output buffer, or as
+ * {@link Double#toString(double)} strings.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NumberFormatBenchmark {
+
+	@Param({ "integers", "fractions" })
+	String numbers;
+
+	double[] values;
+	Output out;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		values = new double[1000];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = numbers.equals("integers") ? random.nextInt(100_000) : random.nextDouble() * 1000;
+		}
+		out = new Output(Writer.nullWriter());
+	}
+
+	@Benchmark
+	public void format() {
+		for (double value : values) {
+			out.println(value);
+		}
+	}
+
+	@Benchmark
+	public void doubleToString() {
+		for (double value : values) {
+			out.println(Double.toString(value));
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package learn.craftinginterpreters.lox.jmh;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import learn.craftinginterpreters.lox.ErrorReporter;
+import learn.craftinginterpreters.lox.lexer.Lexer;
+import learn.craftinginterpreters.lox.parser.ParallelParser;
+import learn.craftinginterpreters.lox.parser.Parser;
+import learn.craftinginterpreters.lox.parser.Stmt;
+
+/**
+ * Lexing and parsing of large scripts, on one thread and on the common
+ * fork/join pool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ParallelParserBenchmark {
+
+	@Param({ "10000", "100000", "1000000" })
+	int statements;
+
+	String source;
+	ParallelParser parser;
+
+	@Setup
+	public void setup() {
+		source = Scripts.generate(statements, true);
+		parser = new ParallelParser();
+	}
+
+	@Benchmark
+	public List<Stmt> sequential() {
+		return new Parser(new Lexer(source)).parse();
+	}
+
+	@Benchmark
+	public List<Stmt> parallel() {
+		return parser.parse(source, ErrorReporter.STANDARD_ERROR);
+	}
+}
@@ -0,0 +1,129 @@
+package learn.craftinginterpreters.lox.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import learn.craftinginterpreters.lox.interpreter.Optimizer;
+import learn.craftinginterpreters.lox.interpreter.Resolver;
+import learn.craftinginterpreters.lox.lexer.Lexer;
+import learn.craftinginterpreters.lox.parser.Parser;
+import learn.craftinginterpreters.lox.parser.Stmt;
+
+/**
+ * Generated Lox scripts used as benchmark corpus. Scripts are deterministic and,
+ * unless generated erroneous, free of errors: every global is declared once and
+ * block locals never shadow.
+ */
+final class Scripts {
+
+	private Scripts() {
+	}
+
+	/**
+	 * @param statements - number of top-level statements
+	 * @param print      - whether the script prints values
+	 */
+	static String generate(int statements, boolean print) {
+		StringBuilder sb = new StringBuilder();
+		int last = -1;
+		for (int i = 0; i < statements; i++) {
+			switch (last < 0 ? 0 : i % 5) {
+			case 0:
+				sb.append("var g").append(i).append(" = ").append(i).append(" * 2 + 1;\n");
+				last = i;
+				break;
+			case 1:
+				sb.append("var s").append(i).append(" = \"item \" + g").append(last).append(";\n");
+				break;
+			case 2:
+				sb.append("{\n");
+				sb.append("  var a").append(i).append(" = g").append(last).append(";\n");
+				sb.append("  var b").append(i).append(" = a").append(i).append(" * 3 - 1;\n");
+				sb.append("  {\n");
+				sb.append("    var c").append(i).append(" = a").append(i).append(" + b").append(i).append(" / 2;\n");
+				sb.append("    c").append(i).append(" < 10 ? \"small\" : \"big\";\n");
+				sb.append("  }\n");
+				sb.append("}\n");
+				break;
+			case 3:
+				sb.append("g").append(last).append(" > 10 == true;\n");
+				break;
+			default:
+				if (print) {
+					sb.append("print g").append(last).append(";\n");
+				} else {
+					sb.append("(g").append(last).append(" + 1) * (g").append(last).append(" - 1);\n");
+				}
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @param statements - number of top-level statements
+	 * @param percent    - share of the statements having a syntax error, spread
+	 *                   evenly over the script
+	 */
+	static String generateErroneous(int statements, int percent) {
+		StringBuilder sb = new StringBuilder();
+		int errors = 0;
+		for (int i = 0; i < statements; i++) {
+			if ((i + 1) * percent / 100 <= errors) {
+				sb.append("var g").append(i).append(" = ").append(i).append(" * 2 + 1;\n");
+				continue;
+			}
+			switch (errors++ % 4) {
+			case 0:
+				sb.append("var e").append(i).append(" = ").append(i).append(" + 1\n");
+				break;
+			case 1:
+				sb.append("print (").append(i).append(" + 1;\n");
+				break;
+			case 2:
+				sb.append("true ? ").append(i).append(" ").append(i).append(";\n");
+				break;
+			default:
+				sb.append("var = ").append(i).append(";\n");
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @param statements - number of top-level statements, each declaring a row
+	 *                   of number literals as a data file would
+	 */
+	static String generateNumbers(int statements) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < statements; i++) {
+			sb.append("var n").append(i).append(" = ").append(i);
+			sb.append(" + ").append(i % 100).append(".25");
+			sb.append(" + ").append(i * 7919 % 100000).append('.').append(i * 104729 % 1000000);
+			sb.append(" + 0.").append(i * 48271 % 1000000007).append(i * 16807 % 1000000007).append(";\n");
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @return the parsed, optimized and resolved statements of the source
+	 */
+	static List<Stmt> compile(String source) {
+		return compile(source, true);
+	}
+
+	/**
+	 * @param optimize - whether constant expressions get folded
+	 * @return the parsed and resolved statements of the source
+	 */
+	static List<Stmt> compile(String source, boolean optimize) {
+		List<Stmt> statements = new ArrayList<>();
+		Optimizer optimizer = new Optimizer();
+		Resolver resolver = new Resolver();
+		new Parser(new Lexer(source)).statements().forEachRemaining(statement -> {
+			Stmt compiled = optimize ? optimizer.optimize(statement) : statement;
+			resolver.resolve(compiled);
+			statements.add(compiled);
+		});
+		return statements;
+	}
+}
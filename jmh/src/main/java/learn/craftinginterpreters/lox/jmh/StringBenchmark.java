@@ -0,0 +1,56 @@
+package learn.craftinginterpreters.lox.jmh;
+
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import learn.craftinginterpreters.lox.interpreter.Interpreter;
+import learn.craftinginterpreters.lox.interpreter.Output;
+import learn.craftinginterpreters.lox.parser.Stmt;
+
+/**
+ * A string built by appending one piece at a time, then printed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringBenchmark {
+
+	@Param({ "100", "1000", "10000" })
+	int pieces;
+
+	Interpreter interpreter;
+	// block appending the pieces to a local
+	Stmt block;
+
+	@Setup
+	public void setup() {
+		StringBuilder sb = new StringBuilder("{ var s0 = \"\";");
+		for (int i = 1; i <= pieces; i++) {
+			sb.append(" var s").append(i).append(" = s").append(i - 1).append(" + \"line ").append(i)
+					.append(" of the report\\n\";");
+		}
+		sb.append(" print s").append(pieces).append("; }");
+		interpreter = new Interpreter(new Output(Writer.nullWriter()));
+		block = Scripts.compile(sb.toString()).get(0);
+	}
+
+	@Benchmark
+	public void append() {
+		block.accept(interpreter);
+	}
+}
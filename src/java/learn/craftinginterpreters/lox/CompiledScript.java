@@ -0,0 +1,139 @@
+package learn.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import learn.craftinginterpreters.lox.closure.ClosureCompiler;
+import learn.craftinginterpreters.lox.closure.Program;
+import learn.craftinginterpreters.lox.compiler.Chunk;
+import learn.craftinginterpreters.lox.compiler.Compiler;
+import learn.craftinginterpreters.lox.interpreter.Optimizer;
+import learn.craftinginterpreters.lox.interpreter.Resolver;
+import learn.craftinginterpreters.lox.jit.TieredScript;
+import learn.craftinginterpreters.lox.parser.ParallelParser;
+import learn.craftinginterpreters.lox.parser.Stmt;
+
+/**
+ * A script parsed, optimized and resolved once, for the backend of the
+ * {@link LoxEngine} which compiled it, and run any number of times by
+ * {@link LoxContext#run(CompiledScript)}.
+ *
+ * Running a compiled script behaves as running its source: the statements
+ * parsed before the first syntax error get executed, then the syntax errors
+ * are reported. A compiled script may be run by several contexts at once. It is
+ * not immutable though: on the interpreter backend, the contexts running it
+ * rewrite the operations of its AST nodes in place as they specialize, and the
+ * JIT backend counts executions and installs bytecode.
+ */
+public class CompiledScript {
+
+	/**
+	 * Syntax error found while compiling, reported on each run.
+	 */
+	static final class SyntaxError {
+		final int line;
+		final String message;
+
+		SyntaxError(int line, String message) {
+			this.line = line;
+			this.message = message;
+		}
+	}
+
+	private final LoxEngine.Backend backend;
+	// statements before the first syntax error
+	private final List<Stmt> statements;
+	// bytecode of the statements, only for the VM backend
+	private final Chunk chunk;
+	// closures of the statements, only for the closures backend
+	private final Program program;
+	// statements compiled once hot, only for the JIT backend
+	private final TieredScript tiers;
+	private final List<SyntaxError> errors;
+	private final int length;
+
+	private CompiledScript(LoxEngine.Backend backend, List<Stmt> statements, Chunk chunk, Program program,
+			TieredScript tiers, List<SyntaxError> errors, int length) {
+		this.backend = backend;
+		this.statements = statements;
+		this.chunk = chunk;
+		this.program = program;
+		this.tiers = tiers;
+		this.errors = errors;
+		this.length = length;
+	}
+
+	static CompiledScript compile(LoxEngine.Backend backend, String source) {
+		List<SyntaxError> errors = new ArrayList<>();
+		ErrorReporter reporter = (line, message) -> errors.add(new SyntaxError(line, message));
+		// large sources are lexed and parsed on every core
+		Iterator<Stmt> parsed = new ParallelParser().statements(source, reporter);
+		Optimizer optimizer = new Optimizer();
+		List<Stmt> statements = new ArrayList<>();
+		while (parsed.hasNext()) {
+			Stmt statement = parsed.next();
+			if (!errors.isEmpty()) {
+				// never executed, only parsed to report the other errors
+				continue;
+			}
+			statements.add(optimizer.optimize(statement));
+		}
+		return of(backend, statements, errors, source.length());
+	}
+
+	/**
+	 * @param statements - optimized statements free of syntax errors, such as
+	 *                   read back from an AST image
+	 * @param length     - length of their source
+	 */
+	static CompiledScript of(LoxEngine.Backend backend, List<Stmt> statements, int length) {
+		return of(backend, statements, List.of(), length);
+	}
+
+	private static CompiledScript of(LoxEngine.Backend backend, List<Stmt> statements, List<SyntaxError> errors,
+			int length) {
+		new Resolver().resolve(statements);
+		Chunk chunk = backend == LoxEngine.Backend.VM ? new Compiler().compile(statements) : null;
+		Program program = backend == LoxEngine.Backend.CLOSURES ? new ClosureCompiler().compile(statements) : null;
+		TieredScript tiers = backend == LoxEngine.Backend.JIT ? new TieredScript(statements) : null;
+		return new CompiledScript(backend, Collections.unmodifiableList(statements), chunk, program, tiers,
+				Collections.unmodifiableList(errors), length);
+	}
+
+	public LoxEngine.Backend getBackend() {
+		return backend;
+	}
+
+	public List<Stmt> getStatements() {
+		return statements;
+	}
+
+	Chunk getChunk() {
+		return chunk;
+	}
+
+	Program getProgram() {
+		return program;
+	}
+
+	TieredScript getTiers() {
+		return tiers;
+	}
+
+	List<SyntaxError> getErrors() {
+		return errors;
+	}
+
+	public boolean hasErrors() {
+		return !errors.isEmpty();
+	}
+
+	/**
+	 * @return length of the source, in chars
+	 */
+	public int getLength() {
+		return length;
+	}
+}
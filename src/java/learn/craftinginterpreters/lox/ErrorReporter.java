@@ -0,0 +1,25 @@
+package learn.craftinginterpreters.lox;
+
+/**
+ * Receiver of the errors found while lexing, parsing or running a program.
+ */
+@FunctionalInterface
+public interface ErrorReporter {
+
+	/**
+	 * Print errors to the standard error as [line] Error: message.
+	 */
+	ErrorReporter STANDARD_ERROR = (line, message) -> {
+		if (line >= 0) {
+			System.err.println("[" + line + "] Error: " + message);
+		} else {
+			System.err.println(message);
+		}
+	};
+
+	/**
+	 * @param line    - line of the error, or -1 when unknown
+	 * @param message - description of the error
+	 */
+	void error(int line, String message);
+}
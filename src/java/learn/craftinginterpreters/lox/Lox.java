@@ -3,34 +3,64 @@ package learn.craftinginterpreters.lox;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.util.List;
 
-import learn.craftinginterpreters.lox.interpreter.Interpreter;
-import learn.craftinginterpreters.lox.lexer.Lexer;
-import learn.craftinginterpreters.lox.lexer.Token;
-import learn.craftinginterpreters.lox.parser.Parser;
-import learn.craftinginterpreters.lox.parser.Stmt;
+import learn.craftinginterpreters.lox.interpreter.Output;
+import learn.craftinginterpreters.lox.interpreter.Profile;
 
 public class Lox {
 
-	private static boolean hadError = false;
-	private static boolean hadRuntimeError = false;
-	private static Interpreter interpreter;
+	// program output, flushed on exit, before a prompt and before an error
+	private static final Output out = new Output();
+	private static LoxEngine engine;
+	private static LoxContext context;
+	// whether scripts are loaded from and saved to AST images
+	private static boolean cache = false;
+	// whether scripts are read whole and parsed on every core before running
+	private static boolean parallel = false;
 
 	public static void main(String[] args) throws IOException {
-		if (args.length > 2) {
-			System.err.println("Too many parameters. Usage: lox [script]");
-			System.exit(64);
+		String script = null;
+		LoxEngine.Backend backend = LoxEngine.Backend.INTERPRETER;
+		LoxEngine.Profiling profiling = LoxEngine.Profiling.NONE;
+		for (String arg : args) {
+			if (arg.equals("--vm")) {
+				backend = LoxEngine.Backend.VM;
+			} else if (arg.equals("--closures")) {
+				backend = LoxEngine.Backend.CLOSURES;
+			} else if (arg.equals("--cache")) {
+				cache = true;
+			} else if (arg.equals("--parallel")) {
+				parallel = true;
+			} else if (arg.equals("--profile")) {
+				profiling = LoxEngine.Profiling.INSTRUMENTED;
+			} else if (arg.equals("--profile=sampling")) {
+				profiling = LoxEngine.Profiling.SAMPLING;
+			} else if (script == null) {
+				script = arg;
+			} else {
+				System.err.println("Too many parameters. Usage: lox [--vm|--closures] [--cache] [--parallel] [--profile[=sampling]] [script]");
+				System.exit(64);
+			}
 		}
 
-		interpreter = new Interpreter();
-		if (args.length == 1) {
-			runFile(args[0]);
+		if (backend != LoxEngine.Backend.INTERPRETER && profiling != LoxEngine.Profiling.NONE) {
+			System.err.println("Profiling is only available with the interpreter.");
+			System.exit(64);
+		}
+		engine = new LoxEngine(backend, profiling);
+		context = engine.createContext(out, ErrorReporter.STANDARD_ERROR);
+		if (script != null) {
+			runFile(script);
 		} else {
 			runPrompt();
+			writeProfile("lox");
 		}
 	}
 
@@ -41,11 +71,29 @@ public class Lox {
 	 * @throws IOException
 	 */
 	protected static void runFile(String path) throws IOException {
-		byte[] bytes = Files.readAllBytes(Paths.get(path));
-		run(new String(bytes, Charset.defaultCharset()));
-		if (hadError) {
+		if (cache || parallel) {
+			try {
+				// compiled sources are parsed on every core when large
+				context.run(cache ? engine.load(Paths.get(path))
+						: engine.compile(new String(Files.readAllBytes(Paths.get(path)), Charset.defaultCharset())));
+				out.println();
+			} finally {
+				out.flush();
+			}
+		} else {
+			try (FileChannel channel = FileChannel.open(Paths.get(path))) {
+				context.run(channel, Charset.defaultCharset());
+				out.println();
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			} finally {
+				out.flush();
+			}
+		}
+		writeProfile(path);
+		if (context.hadError()) {
 			System.exit(65);
-		} else if (hadRuntimeError) {
+		} else if (context.hadRuntimeError()) {
 			System.exit(70);
 		}
 	}
@@ -59,55 +107,33 @@ public class Lox {
 		try (BufferedReader reader = new BufferedReader(new InputStreamReader(System.in))) {
 			String line;
 			while (true) {
-				System.out.print("> ");
+				out.print("> ");
+				out.flush();
 				line = reader.readLine();
 				if (line == null) {
 					break;
 				}
-				run(line);
-				hadError = false;
-				hadRuntimeError = false;
+				context.run(line);
+				out.println();
+				context.clearErrors();
 			}
 		}
 	}
 
 	/**
-	 * Parse and run the command.
-	 * 
-	 * @param source - line
+	 * Print the flat profile to the standard error and save the collapsed
+	 * stacks to name.collapsed, when profiling.
 	 */
-	protected static void run(String source) {
-		Lexer lexer = new Lexer(source);
-		Parser parser = new Parser(lexer.scan());
-		List<Stmt> statements = parser.parse();
-		if (hadError) {
-			// has parser error
-			System.out.println();
+	private static void writeProfile(String name) throws IOException {
+		Profile profile = context.getProfile();
+		if (profile == null) {
 			return;
 		}
-		try {
-			for (Stmt statement : statements) {
-				statement.accept(interpreter);
-			}
-		} catch (RuntimeError e) {
-			hadRuntimeError = true;
-			Token t = e.getOperator();
-			if (t != null) {
-				error(t.getLine(), e.getMessage());
-			}
-			else {
-				System.err.println(e.getMessage());
-			}
+		Writer err = new OutputStreamWriter(System.err, Charset.defaultCharset());
+		profile.writeFlat(err);
+		err.flush();
+		try (Writer collapsed = Files.newBufferedWriter(Paths.get(name + ".collapsed"))) {
+			profile.writeCollapsed(collapsed);
 		}
-		System.out.println();
-	}
-
-	public static void error(int line, String message) {
-		error(line, "", message);
-	}
-
-	private static void error(int line, String where, String message) {
-		System.err.println("[" + line + "] Error" + where + ": " + message);
-		hadError = true;
 	}
 }
@@ -0,0 +1,300 @@
+package learn.craftinginterpreters.lox;
+
+import java.io.Reader;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.List;
+
+import learn.craftinginterpreters.lox.closure.ClosureCompiler;
+import learn.craftinginterpreters.lox.closure.ClosureRuntime;
+import learn.craftinginterpreters.lox.compiler.Compiler;
+import learn.craftinginterpreters.lox.interpreter.InstrumentedInterpreter;
+import learn.craftinginterpreters.lox.interpreter.Interpreter;
+import learn.craftinginterpreters.lox.interpreter.MeteredInterpreter;
+import learn.craftinginterpreters.lox.interpreter.Optimizer;
+import learn.craftinginterpreters.lox.interpreter.Output;
+import learn.craftinginterpreters.lox.interpreter.Profile;
+import learn.craftinginterpreters.lox.interpreter.Resolver;
+import learn.craftinginterpreters.lox.interpreter.SamplingInterpreter;
+import learn.craftinginterpreters.lox.lexer.Lexer;
+import learn.craftinginterpreters.lox.lexer.Token;
+import learn.craftinginterpreters.lox.lexer.TokenSource;
+import learn.craftinginterpreters.lox.parser.Parser;
+import learn.craftinginterpreters.lox.parser.Stmt;
+import learn.craftinginterpreters.lox.vm.VM;
+
+/**
+ * Execution state of Lox programs created by a {@link LoxEngine}: the global
+ * variables, the output and the errors of the programs run so far. Globals
+ * outlive a single run, as in the REPL.
+ *
+ * Contexts share no state, but a context must only be used by one thread at a
+ * time.
+ */
+public class LoxContext {
+
+	// time between two samples when sampling, in nanoseconds
+	private static final long SAMPLING_INTERVAL = 1_000_000;
+
+	private final LoxEngine.Backend backend;
+	// exactly one of them is set, depending on the backend
+	private final Interpreter interpreter;
+	private final VM vm;
+	private final ClosureRuntime closures;
+
+	private final Metrics metrics;
+	private final Output out;
+	private final ErrorReporter errors;
+	private boolean hadError;
+	private boolean hadRuntimeError;
+
+	LoxContext(LoxEngine.Backend backend, LoxEngine.Profiling profiling, Metrics metrics, Output out,
+			ErrorReporter errors) {
+		this.backend = backend;
+		this.interpreter = backend == LoxEngine.Backend.INTERPRETER ? newInterpreter(profiling, metrics, out)
+				: backend == LoxEngine.Backend.JIT ? new Interpreter(out) : null;
+		this.vm = backend == LoxEngine.Backend.VM ? new VM(out) : null;
+		this.closures = backend == LoxEngine.Backend.CLOSURES ? new ClosureRuntime(out) : null;
+		this.metrics = metrics;
+		this.out = out;
+		this.errors = errors;
+		this.hadError = false;
+		this.hadRuntimeError = false;
+	}
+
+	public void run(String source) {
+		run(new Lexer(source, this::syntaxError));
+	}
+
+	public void run(Reader reader) {
+		run(new Lexer(reader, this::syntaxError));
+	}
+
+	public void run(ReadableByteChannel channel, Charset charset) {
+		run(new Lexer(channel, charset, this::syntaxError));
+	}
+
+	/**
+	 * Run a script compiled by an engine with the same backend as this
+	 * context's.
+	 */
+	public void run(CompiledScript script) {
+		if (script.getBackend() != backend) {
+			throw new IllegalArgumentException(
+					"Script compiled for " + script.getBackend() + " run on " + backend + ".");
+		}
+		if (!hadError && !hadRuntimeError) {
+			long start = metrics != Metrics.NONE ? System.nanoTime() : 0;
+			startSampling();
+			try {
+				if (vm != null) {
+					vm.interpret(script.getChunk());
+				} else if (closures != null) {
+					closures.run(script.getProgram());
+				} else if (script.getTiers() != null) {
+					script.getTiers().run(interpreter);
+				} else {
+					for (Stmt statement : script.getStatements()) {
+						statement.accept(interpreter);
+					}
+				}
+			} catch (RuntimeError e) {
+				runtimeError(e);
+			} finally {
+				stopSampling();
+				if (metrics != Metrics.NONE) {
+					metrics.phase(Metrics.Phase.EXECUTE, System.nanoTime() - start);
+				}
+			}
+		}
+		for (CompiledScript.SyntaxError error : script.getErrors()) {
+			syntaxError(error.line, error.message);
+		}
+	}
+
+	/**
+	 * Parse and run the source, executing each top-level statement as soon as
+	 * it is parsed. Execution stops at the first error while the rest of the
+	 * source is still parsed to report syntax errors.
+	 *
+	 * With metrics, every phase of every statement is timed, the lexer through
+	 * the tokens the parser pulls.
+	 */
+	private void run(Lexer lexer) {
+		TimedLexer timed = metrics != Metrics.NONE ? new TimedLexer(lexer) : null;
+		long start = timed != null ? System.nanoTime() : 0;
+		Iterator<Stmt> statements = new Parser(timed != null ? timed : lexer, this::syntaxError).statements();
+		Optimizer optimizer = new Optimizer();
+		Resolver resolver = new Resolver();
+		startSampling();
+		try {
+			while (true) {
+				boolean more = statements.hasNext();
+				Stmt statement = more ? statements.next() : null;
+				if (timed != null) {
+					start = parsed(timed, start);
+				}
+				if (!more) {
+					break;
+				}
+				if (hadError || hadRuntimeError) {
+					continue;
+				}
+				statement = optimizer.optimize(statement);
+				resolver.resolve(statement);
+				if (timed != null) {
+					start = timed(Metrics.Phase.RESOLVE, start);
+				}
+				try {
+					if (vm != null) {
+						vm.interpret(new Compiler().compile(List.of(statement)));
+					} else if (closures != null) {
+						closures.run(new ClosureCompiler().compile(List.of(statement)));
+					} else {
+						statement.accept(interpreter);
+					}
+				} catch (RuntimeError e) {
+					runtimeError(e);
+				}
+				if (timed != null) {
+					start = timed(Metrics.Phase.EXECUTE, start);
+				}
+			}
+		} finally {
+			stopSampling();
+		}
+	}
+
+	/**
+	 * Report the time since start as lexing and parsing.
+	 * 
+	 * @return the current time
+	 */
+	private long parsed(TimedLexer lexer, long start) {
+		long now = System.nanoTime();
+		long lexing = lexer.take();
+		metrics.phase(Metrics.Phase.LEX, lexing);
+		metrics.phase(Metrics.Phase.PARSE, Math.max(0, now - start - lexing));
+		return now;
+	}
+
+	/**
+	 * Report the time since start as the phase.
+	 * 
+	 * @return the current time
+	 */
+	private long timed(Metrics.Phase phase, long start) {
+		long now = System.nanoTime();
+		metrics.phase(phase, now - start);
+		return now;
+	}
+
+	/**
+	 * @return profile of the programs run so far, or null when the engine does
+	 *         not profile
+	 */
+	public Profile getProfile() {
+		if (interpreter instanceof InstrumentedInterpreter) {
+			return ((InstrumentedInterpreter) interpreter).getProfile();
+		}
+		if (interpreter instanceof SamplingInterpreter) {
+			return ((SamplingInterpreter) interpreter).getProfile();
+		}
+		return null;
+	}
+
+	public Output getOutput() {
+		return out;
+	}
+
+	public boolean hadError() {
+		return hadError;
+	}
+
+	public boolean hadRuntimeError() {
+		return hadRuntimeError;
+	}
+
+	/**
+	 * Forget the errors of the previous runs, so that the next run executes.
+	 */
+	public void clearErrors() {
+		hadError = false;
+		hadRuntimeError = false;
+	}
+
+	private static Interpreter newInterpreter(LoxEngine.Profiling profiling, Metrics metrics, Output out) {
+		switch (profiling) {
+		case INSTRUMENTED:
+			return new InstrumentedInterpreter(out, metrics);
+		case SAMPLING:
+			return new SamplingInterpreter(out, metrics);
+		default:
+			// only metered when asked for
+			return metrics != Metrics.NONE ? new MeteredInterpreter(out, metrics) : new Interpreter(out);
+		}
+	}
+
+	private void startSampling() {
+		if (interpreter instanceof SamplingInterpreter) {
+			((SamplingInterpreter) interpreter).startSampling(SAMPLING_INTERVAL);
+		}
+	}
+
+	private void stopSampling() {
+		if (interpreter instanceof SamplingInterpreter) {
+			((SamplingInterpreter) interpreter).stopSampling();
+		}
+	}
+
+	private void syntaxError(int line, String message) {
+		hadError = true;
+		metrics.syntaxError();
+		report(line, message);
+	}
+
+	private void runtimeError(RuntimeError error) {
+		hadRuntimeError = true;
+		metrics.runtimeError();
+		report(error.getLine(), error.getMessage());
+	}
+
+	private void report(int line, String message) {
+		// keep the printed lines ahead of the error
+		out.flush();
+		errors.error(line, message);
+	}
+
+	/**
+	 * Token source timing the lexer it pulls tokens from.
+	 */
+	private static final class TimedLexer implements TokenSource {
+		private final Lexer lexer;
+		private long nanos;
+
+		TimedLexer(Lexer lexer) {
+			this.lexer = lexer;
+			this.nanos = 0;
+		}
+
+		@Override
+		public Token next() {
+			long start = System.nanoTime();
+			try {
+				return lexer.next();
+			} finally {
+				nanos += System.nanoTime() - start;
+			}
+		}
+
+		/**
+		 * @return time spent lexing since the last call
+		 */
+		long take() {
+			long taken = nanos;
+			nanos = 0;
+			return taken;
+		}
+	}
+}
@@ -0,0 +1,143 @@
+package learn.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+
+import learn.craftinginterpreters.lox.interpreter.Output;
+import learn.craftinginterpreters.lox.parser.ParallelParser;
+import learn.craftinginterpreters.lox.parser.Stmt;
+import learn.craftinginterpreters.lox.serialization.AstImage;
+
+/**
+ * Entry point for embedding Lox. An engine holds the configuration shared by
+ * the {@link LoxContext contexts} it creates, and is safe to use from any
+ * thread.
+ *
+ * Every context runs programs in isolation from the others, with its own
+ * globals, output and errors, so that many scripts run concurrently, one
+ * context per thread.
+ */
+public class LoxEngine {
+
+	/**
+	 * Execution backend of the programs.
+	 */
+	public static enum Backend {
+		// tree-walking interpreter
+		INTERPRETER,
+		// bytecode compiler and virtual machine
+		VM,
+		// tree of closures compiled from the AST
+		CLOSURES,
+		// tree-walking interpreter compiling the statements of scripts run often to JVM bytecode
+		JIT
+	}
+
+	/**
+	 * Profiling of the programs, only available on the interpreter backend.
+	 * See {@link LoxContext#getProfile()}.
+	 */
+	public static enum Profiling {
+		NONE,
+		// every node counted and timed
+		INSTRUMENTED,
+		// statements sampled at a fixed interval
+		SAMPLING
+	}
+
+	private final Backend backend;
+	private final Profiling profiling;
+	private final Metrics metrics;
+
+	public LoxEngine() {
+		this(Backend.INTERPRETER);
+	}
+
+	public LoxEngine(Backend backend) {
+		this(backend, Profiling.NONE);
+	}
+
+	public LoxEngine(Backend backend, Profiling profiling) {
+		this(backend, profiling, Metrics.NONE);
+	}
+
+	/**
+	 * @param metrics - receiver of the metrics of every context, such as
+	 *                {@link LoxMetrics}
+	 */
+	public LoxEngine(Backend backend, Profiling profiling, Metrics metrics) {
+		if (profiling != Profiling.NONE && backend != Backend.INTERPRETER) {
+			throw new IllegalArgumentException("Profiling is only available on the interpreter backend.");
+		}
+		this.backend = backend;
+		this.profiling = profiling;
+		this.metrics = metrics;
+	}
+
+	public Backend getBackend() {
+		return backend;
+	}
+
+	public Profiling getProfiling() {
+		return profiling;
+	}
+
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Parse, optimize and resolve the source once, to be run by any context of
+	 * this engine. Large sources are lexed and parsed in parallel, see
+	 * {@link ParallelParser}.
+	 */
+	public CompiledScript compile(String source) {
+		return CompiledScript.compile(backend, source);
+	}
+
+	/**
+	 * Compile a script file, loading it from its {@link AstImage} when up to
+	 * date. Otherwise the script is compiled from source, decoded with the
+	 * default charset, and its image saved for the next load unless the script
+	 * has syntax errors.
+	 */
+	public CompiledScript load(Path script) throws IOException {
+		BasicFileAttributes attributes = Files.readAttributes(script, BasicFileAttributes.class);
+		long size = attributes.size();
+		long modified = attributes.lastModifiedTime().toMillis();
+		List<Stmt> statements = AstImage.read(script, size, modified);
+		if (statements != null) {
+			return CompiledScript.of(backend, statements, (int) Math.min(size, Integer.MAX_VALUE));
+		}
+
+		CompiledScript compiled = compile(new String(Files.readAllBytes(script), Charset.defaultCharset()));
+		if (!compiled.hasErrors()) {
+			try {
+				AstImage.write(script, size, modified, compiled.getStatements());
+			} catch (IOException e) {
+				// the image only speeds the next load up, e.g. the directory is read-only
+			}
+		}
+		return compiled;
+	}
+
+	/**
+	 * @return a context printing to the standard output and reporting errors to
+	 *         the standard error
+	 */
+	public LoxContext createContext() {
+		return createContext(new Output(), ErrorReporter.STANDARD_ERROR);
+	}
+
+	/**
+	 * @param out    - sink of the printed values
+	 * @param errors - receiver of the syntax and runtime errors
+	 */
+	public LoxContext createContext(Output out, ErrorReporter errors) {
+		return new LoxContext(backend, profiling, metrics, out, errors);
+	}
+}
@@ -0,0 +1,137 @@
+package learn.craftinginterpreters.lox;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * {@link Metrics} summed over all the contexts of an engine, published as an
+ * MBean once {@link #register(String) registered}. Counters are striped, so
+ * that contexts running concurrently do not contend on them.
+ */
+public class LoxMetrics implements Metrics, LoxMetricsMBean {
+
+	private final LongAdder statements = new LongAdder();
+	private final LongAdder expressions = new LongAdder();
+	private final LongAdder scopes = new LongAdder();
+	private final LongAccumulator maxDepth = new LongAccumulator(Math::max, 0);
+	private final LongAdder syntaxErrors = new LongAdder();
+	private final LongAdder runtimeErrors = new LongAdder();
+	private final LongAdder[] phases;
+
+	public LoxMetrics() {
+		phases = new LongAdder[Phase.values().length];
+		for (int i = 0; i < phases.length; i++) {
+			phases[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Register to the platform MBean server as
+	 * learn.craftinginterpreters.lox:type=Metrics,name=name.
+	 * 
+	 * @return the name registered under
+	 */
+	public ObjectName register(String name) throws JMException {
+		ObjectName objectName = new ObjectName("learn.craftinginterpreters.lox:type=Metrics,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		return objectName;
+	}
+
+	@Override
+	public void statementExecuted() {
+		statements.increment();
+	}
+
+	@Override
+	public void expressionEvaluated() {
+		expressions.increment();
+	}
+
+	@Override
+	public void scopeEntered(int depth) {
+		scopes.increment();
+		maxDepth.accumulate(depth);
+	}
+
+	@Override
+	public void syntaxError() {
+		syntaxErrors.increment();
+	}
+
+	@Override
+	public void runtimeError() {
+		runtimeErrors.increment();
+	}
+
+	@Override
+	public void phase(Phase phase, long nanos) {
+		phases[phase.ordinal()].add(nanos);
+	}
+
+	@Override
+	public long getStatementsExecuted() {
+		return statements.sum();
+	}
+
+	@Override
+	public long getExpressionsEvaluated() {
+		return expressions.sum();
+	}
+
+	@Override
+	public long getScopesEntered() {
+		return scopes.sum();
+	}
+
+	@Override
+	public long getMaxScopeDepth() {
+		return maxDepth.get();
+	}
+
+	@Override
+	public long getSyntaxErrors() {
+		return syntaxErrors.sum();
+	}
+
+	@Override
+	public long getRuntimeErrors() {
+		return runtimeErrors.sum();
+	}
+
+	@Override
+	public long getLexNanos() {
+		return phases[Phase.LEX.ordinal()].sum();
+	}
+
+	@Override
+	public long getParseNanos() {
+		return phases[Phase.PARSE.ordinal()].sum();
+	}
+
+	@Override
+	public long getResolveNanos() {
+		return phases[Phase.RESOLVE.ordinal()].sum();
+	}
+
+	@Override
+	public long getExecuteNanos() {
+		return phases[Phase.EXECUTE.ordinal()].sum();
+	}
+
+	@Override
+	public void reset() {
+		statements.reset();
+		expressions.reset();
+		scopes.reset();
+		maxDepth.reset();
+		syntaxErrors.reset();
+		runtimeErrors.reset();
+		for (LongAdder phase : phases) {
+			phase.reset();
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package learn.craftinginterpreters.lox;
+
+/**
+ * Management interface of {@link LoxMetrics}.
+ */
+public interface LoxMetricsMBean {
+
+	long getStatementsExecuted();
+
+	long getExpressionsEvaluated();
+
+	/**
+	 * @return blocks declaring locals entered, whether they allocated their
+	 *         environment or reused the one of a block exited at the same depth
+	 */
+	long getScopesEntered();
+
+	long getMaxScopeDepth();
+
+	long getSyntaxErrors();
+
+	long getRuntimeErrors();
+
+	long getLexNanos();
+
+	long getParseNanos();
+
+	long getResolveNanos();
+
+	long getExecuteNanos();
+
+	void reset();
+}
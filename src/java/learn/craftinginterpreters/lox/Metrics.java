@@ -0,0 +1,56 @@
+package learn.craftinginterpreters.lox;
+
+/**
+ * Receiver of the runtime metrics of the contexts of a {@link LoxEngine}. It is
+ * called by every context of the engine, possibly from several threads at
+ * once.
+ *
+ * Statements, expressions and scopes are only counted on the interpreter
+ * backend, whose {@link learn.craftinginterpreters.lox.interpreter.Interpreter
+ * plain version} is not metered, so that an engine without metrics does not pay
+ * for them.
+ */
+public interface Metrics {
+
+	/**
+	 * Metrics discarded.
+	 */
+	Metrics NONE = new Metrics() {
+	};
+
+	/**
+	 * Phase of a run. Lexing is interleaved with parsing, which is interleaved
+	 * with the execution of the statements already parsed.
+	 */
+	public static enum Phase {
+		LEX,
+		PARSE,
+		// optimization and resolution of the parsed statements
+		RESOLVE,
+		EXECUTE
+	}
+
+	default void statementExecuted() {
+	}
+
+	default void expressionEvaluated() {
+	}
+
+	/**
+	 * @param depth - number of block scopes, including the one entered
+	 */
+	default void scopeEntered(int depth) {
+	}
+
+	default void syntaxError() {
+	}
+
+	default void runtimeError() {
+	}
+
+	/**
+	 * @param nanos - time spent in the phase
+	 */
+	default void phase(Phase phase, long nanos) {
+	}
+}
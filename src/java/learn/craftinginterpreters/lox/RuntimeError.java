@@ -2,13 +2,30 @@ package learn.craftinginterpreters.lox;
 
 import learn.craftinginterpreters.lox.lexer.Token;
 
+/**
+ * Error aborting the execution of a program. Errors are only reported by line
+ * and message, so they are created without a stack trace, which would cost
+ * more than the failing operation itself.
+ */
 @SuppressWarnings("serial")
 public class RuntimeError extends RuntimeException {
 	private Token operator;
+	private int line;
 	private String msg;
 
 	public RuntimeError(Token operator, String msg) {
+		super(msg, null, false, false);
 		this.operator = operator;
+		this.line = operator != null ? operator.getLine() : -1;
+		this.msg = msg;
+	}
+
+	/**
+	 * Error raised where no token is at hand, e.g. by the VM.
+	 */
+	public RuntimeError(int line, String msg) {
+		super(msg, null, false, false);
+		this.line = line;
 		this.msg = msg;
 	}
 
@@ -16,6 +33,13 @@ public class RuntimeError extends RuntimeException {
 		return this.operator;
 	}
 
+	/**
+	 * @return line the error was raised at, or -1 when unknown
+	 */
+	public int getLine() {
+		return this.line;
+	}
+
 	public String getMessage() {
 		return this.msg;
 	}
@@ -0,0 +1,110 @@
+package learn.craftinginterpreters.lox;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of {@link CompiledScript compiled scripts} keyed by the SHA-256
+ * hash of their source, so that a script run again and again is only parsed
+ * once.
+ *
+ * The cache holds at most a number of scripts whose sources add up to at most
+ * a number of chars, and evicts the least recently used scripts beyond that.
+ * It is safe to use from any thread. Scripts are compiled outside of the lock,
+ * so that two threads missing on the same source may both compile it.
+ */
+public class ScriptCache {
+
+	private final LoxEngine engine;
+	private final int maxScripts;
+	private final long maxChars;
+
+	// in access order, least recently used first
+	private final LinkedHashMap<ByteBuffer, CompiledScript> scripts;
+	private long chars;
+	private long hits;
+	private long misses;
+
+	/**
+	 * @param engine     - engine compiling the scripts
+	 * @param maxScripts - maximum number of cached scripts
+	 * @param maxChars   - maximum total length of the cached sources
+	 */
+	public ScriptCache(LoxEngine engine, int maxScripts, long maxChars) {
+		if (maxScripts <= 0 || maxChars <= 0) {
+			throw new IllegalArgumentException("Cache bounds must be positive.");
+		}
+		this.engine = engine;
+		this.maxScripts = maxScripts;
+		this.maxChars = maxChars;
+		this.scripts = new LinkedHashMap<>(16, 0.75f, true);
+		this.chars = 0;
+	}
+
+	/**
+	 * @return the compiled source, compiled now if not cached
+	 */
+	public CompiledScript get(String source) {
+		ByteBuffer key = hash(source);
+		synchronized (this) {
+			CompiledScript script = scripts.get(key);
+			if (script != null) {
+				hits++;
+				return script;
+			}
+			misses++;
+		}
+
+		CompiledScript script = engine.compile(source);
+		synchronized (this) {
+			CompiledScript previous = scripts.put(key, script);
+			if (previous != null) {
+				chars -= previous.getLength();
+			}
+			chars += script.getLength();
+			evict();
+		}
+		return script;
+	}
+
+	public synchronized int size() {
+		return scripts.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized void clear() {
+		scripts.clear();
+		chars = 0;
+	}
+
+	private void evict() {
+		Iterator<Map.Entry<ByteBuffer, CompiledScript>> eldest = scripts.entrySet().iterator();
+		// the script just added stays, even when larger than the cache
+		while ((scripts.size() > maxScripts || chars > maxChars) && scripts.size() > 1) {
+			chars -= eldest.next().getValue().getLength();
+			eldest.remove();
+		}
+	}
+
+	private static ByteBuffer hash(String source) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			return ByteBuffer.wrap(digest.digest(source.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform supports SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,495 @@
+package learn.craftinginterpreters.lox.closure;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import learn.craftinginterpreters.lox.RuntimeError;
+import learn.craftinginterpreters.lox.closure.Program.Condition;
+import learn.craftinginterpreters.lox.closure.Program.Expression;
+import learn.craftinginterpreters.lox.closure.Program.NumberExpression;
+import learn.craftinginterpreters.lox.closure.Program.Statement;
+import learn.craftinginterpreters.lox.interpreter.Interpreter;
+import learn.craftinginterpreters.lox.interpreter.Rope;
+import learn.craftinginterpreters.lox.lexer.Symbol;
+import learn.craftinginterpreters.lox.lexer.Token;
+import learn.craftinginterpreters.lox.lexer.Type;
+import learn.craftinginterpreters.lox.parser.Assignment;
+import learn.craftinginterpreters.lox.parser.Binary;
+import learn.craftinginterpreters.lox.parser.BlockStmt;
+import learn.craftinginterpreters.lox.parser.Expr;
+import learn.craftinginterpreters.lox.parser.ExpressionStmt;
+import learn.craftinginterpreters.lox.parser.Grouping;
+import learn.craftinginterpreters.lox.parser.Literal;
+import learn.craftinginterpreters.lox.parser.PrintStmt;
+import learn.craftinginterpreters.lox.parser.Stmt;
+import learn.craftinginterpreters.lox.parser.Ternary;
+import learn.craftinginterpreters.lox.parser.Unary;
+import learn.craftinginterpreters.lox.parser.VarDeclareStmt;
+import learn.craftinginterpreters.lox.parser.Variable;
+
+/**
+ * Compile resolved statements into a {@link Program} of closures, each one
+ * bound to what is statically known of its node: the operator, whether the
+ * operands are numeric or constant, and the index of the local variables. The
+ * tree is walked once, and running the program makes no decision the
+ * {@link Interpreter} makes on every evaluation. Its behavior mirrors the
+ * interpreter, including the runtime error messages.
+ *
+ * Block locals get an index in the {@link ClosureRuntime} slots: the slot
+ * bound by the Resolver offset by the slots of the enclosing blocks.
+ */
+public class ClosureCompiler implements Expr.Visitor<Expression>, Stmt.Visitor<Statement> {
+
+	// first slot of each enclosing block, innermost last
+	private final List<Integer> blockBases;
+	private int slotCount;
+	private int maxSlotCount;
+
+	public ClosureCompiler() {
+		blockBases = new ArrayList<>();
+		slotCount = 0;
+		maxSlotCount = 0;
+	}
+
+	public Program compile(List<Stmt> statements) {
+		Statement[] compiled = new Statement[statements.size()];
+		for (int i = 0; i < compiled.length; i++) {
+			compiled[i] = statements.get(i).accept(this);
+		}
+		return new Program(compiled, maxSlotCount);
+	}
+
+	/*
+	 * EXPRESSION VISITOR METHODS
+	 */
+
+	@Override
+	public Expression visit(Binary expr) {
+		if (expr.isNumeric()) {
+			// only the result of the outermost arithmetic node gets boxed
+			NumberExpression number = number(expr);
+			return runtime -> number.evaluate(runtime);
+		}
+
+		Token operator = expr.getOperator();
+		switch (operator.getType()) {
+		case PLUS:
+			return add(operator, compile(expr.getLeft()), compile(expr.getRight()));
+		case EQUAL_EQUAL:
+		case BANG_EQUAL:
+		case LESS:
+		case LESS_EQUAL:
+		case GREATER:
+		case GREATER_EQUAL: {
+			Condition condition = condition(expr);
+			return runtime -> condition.test(runtime);
+		}
+		case COMMA: {
+			Expression left = compile(expr.getLeft());
+			Expression right = compile(expr.getRight());
+			return runtime -> {
+				left.evaluate(runtime);
+				return right.evaluate(runtime);
+			};
+		}
+		default: {
+			Expression left = compile(expr.getLeft());
+			Expression right = compile(expr.getRight());
+			return runtime -> {
+				left.evaluate(runtime);
+				right.evaluate(runtime);
+				throw new RuntimeError(operator, "Unreachable code in Interpreter's Binary.");
+			};
+		}
+		}
+	}
+
+	@Override
+	public Expression visit(Ternary expr) {
+		Condition cond = condition(expr.getCond());
+		Expression left = compile(expr.getLeft());
+		Expression right = compile(expr.getRight());
+		return runtime -> cond.test(runtime) ? left.evaluate(runtime) : right.evaluate(runtime);
+	}
+
+	@Override
+	public Expression visit(Grouping expr) {
+		return compile(expr.getExpr());
+	}
+
+	@Override
+	public Expression visit(Literal expr) {
+		Object value = expr.getValue();
+		return runtime -> value;
+	}
+
+	@Override
+	public Expression visit(Unary expr) {
+		switch (expr.getOperator().getType()) {
+		case BANG: {
+			Condition condition = condition(expr);
+			return runtime -> condition.test(runtime);
+		}
+		case MINUS: {
+			NumberExpression number = number(expr);
+			return runtime -> number.evaluate(runtime);
+		}
+		default:
+			return runtime -> null;
+		}
+	}
+
+	@Override
+	public Expression visit(Variable expr) {
+		int depth = expr.getDepth();
+		if (depth >= 0) {
+			int index = index(depth, expr.getSlot());
+			return runtime -> runtime.slots[index];
+		}
+
+		Token identifier = expr.getIdentifier();
+		Symbol name = identifier.getSymbol();
+		return runtime -> {
+			Object value = runtime.globals.getValue(name);
+			if (value == null && !runtime.globals.hasVariable(name)) {
+				throw new RuntimeError(identifier, "Undefined variable " + identifier.getLexem());
+			}
+			return value;
+		};
+	}
+
+	@Override
+	public Expression visit(Assignment expr) {
+		Expression value = compile(expr.getValue());
+		int depth = expr.getDepth();
+		if (depth >= 0) {
+			int index = index(depth, expr.getSlot());
+			return runtime -> runtime.slots[index] = value.evaluate(runtime);
+		}
+
+		Token identifier = expr.getIdentifier();
+		return runtime -> {
+			Object result = value.evaluate(runtime);
+			runtime.globals.assign(identifier, result);
+			return result;
+		};
+	}
+
+	/**
+	 * Compile an expression which {@link Expr#isNumeric() is numeric}, as
+	 * {@link Interpreter} evaluates it without boxing.
+	 */
+	private NumberExpression number(Expr expr) {
+		if (expr instanceof Binary) {
+			return arithmetic((Binary) expr);
+		}
+		if (expr instanceof Literal) {
+			double value = (Double) ((Literal) expr).getValue();
+			return runtime -> value;
+		}
+		if (expr instanceof Grouping) {
+			return number(((Grouping) expr).getExpr());
+		}
+		Unary unary = (Unary) expr;
+		Token operator = unary.getOperator();
+		Expr operand = unary.getRight();
+		if (operand.isNumeric()) {
+			NumberExpression number = number(operand);
+			return runtime -> -number.evaluate(runtime);
+		}
+		Expression value = compile(operand);
+		return runtime -> {
+			Object result = value.evaluate(runtime);
+			checkNumber(operator, result);
+			return -(double) result;
+		};
+	}
+
+	private NumberExpression arithmetic(Binary expr) {
+		Token operator = expr.getOperator();
+		Expr leftExpr = expr.getLeft();
+		Expr rightExpr = expr.getRight();
+		if (!leftExpr.isNumeric() || !rightExpr.isNumeric()) {
+			return checkedArithmetic(operator, compile(leftExpr), compile(rightExpr));
+		}
+
+		NumberExpression left = number(leftExpr);
+		if (rightExpr instanceof Literal) {
+			double right = (Double) ((Literal) rightExpr).getValue();
+			switch (operator.getType()) {
+			case PLUS:
+				return runtime -> left.evaluate(runtime) + right;
+			case MINUS:
+				return runtime -> left.evaluate(runtime) - right;
+			case STAR:
+				return runtime -> left.evaluate(runtime) * right;
+			case SLASH:
+				return runtime -> left.evaluate(runtime) / right;
+			default:
+				throw new RuntimeError(operator, "Unreachable code in ClosureCompiler's Binary.");
+			}
+		}
+
+		NumberExpression right = number(rightExpr);
+		switch (operator.getType()) {
+		case PLUS:
+			return runtime -> left.evaluate(runtime) + right.evaluate(runtime);
+		case MINUS:
+			return runtime -> left.evaluate(runtime) - right.evaluate(runtime);
+		case STAR:
+			return runtime -> left.evaluate(runtime) * right.evaluate(runtime);
+		case SLASH:
+			return runtime -> left.evaluate(runtime) / right.evaluate(runtime);
+		default:
+			throw new RuntimeError(operator, "Unreachable code in ClosureCompiler's Binary.");
+		}
+	}
+
+	/**
+	 * Arithmetic on operands which are not statically numeric, checked once
+	 * both are evaluated.
+	 */
+	private static NumberExpression checkedArithmetic(Token operator, Expression left, Expression right) {
+		switch (operator.getType()) {
+		case PLUS:
+			return runtime -> {
+				Object l = left.evaluate(runtime);
+				Object r = right.evaluate(runtime);
+				checkNumbers(operator, l, r);
+				return (double) l + (double) r;
+			};
+		case MINUS:
+			return runtime -> {
+				Object l = left.evaluate(runtime);
+				Object r = right.evaluate(runtime);
+				checkNumbers(operator, l, r);
+				return (double) l - (double) r;
+			};
+		case STAR:
+			return runtime -> {
+				Object l = left.evaluate(runtime);
+				Object r = right.evaluate(runtime);
+				checkNumbers(operator, l, r);
+				return (double) l * (double) r;
+			};
+		case SLASH:
+			return runtime -> {
+				Object l = left.evaluate(runtime);
+				Object r = right.evaluate(runtime);
+				checkNumbers(operator, l, r);
+				return (double) l / (double) r;
+			};
+		default:
+			throw new RuntimeError(operator, "Unreachable code in ClosureCompiler's Binary.");
+		}
+	}
+
+	private static Expression add(Token operator, Expression left, Expression right) {
+		return runtime -> {
+			Object l = left.evaluate(runtime);
+			Object r = right.evaluate(runtime);
+			if (l instanceof Double && r instanceof Double) {
+				return (double) l + (double) r;
+			}
+			if (l instanceof CharSequence || r instanceof CharSequence) {
+				return Rope.concat(l, r);
+			}
+			throw new RuntimeError(operator, "Operands must be either Double or String");
+		};
+	}
+
+	/**
+	 * Compile an expression evaluated for its truthiness. Comparisons and
+	 * negations are tested on primitive booleans, and comparisons of numeric
+	 * operands on primitive doubles.
+	 */
+	private Condition condition(Expr expr) {
+		if (expr instanceof Grouping) {
+			return condition(((Grouping) expr).getExpr());
+		}
+		if (expr instanceof Unary && ((Unary) expr).getOperator().match(Type.BANG)) {
+			Condition operand = condition(((Unary) expr).getRight());
+			return runtime -> !operand.test(runtime);
+		}
+		if (expr instanceof Binary) {
+			Binary binary = (Binary) expr;
+			if (binary.getOperator().match(Type.EQUAL_EQUAL, Type.BANG_EQUAL, Type.LESS, Type.LESS_EQUAL,
+					Type.GREATER, Type.GREATER_EQUAL)) {
+				return comparison(binary);
+			}
+		}
+		Expression value = compile(expr);
+		return runtime -> Interpreter.truthy(value.evaluate(runtime));
+	}
+
+	private Condition comparison(Binary expr) {
+		Token operator = expr.getOperator();
+		Expr leftExpr = expr.getLeft();
+		Expr rightExpr = expr.getRight();
+		if (leftExpr.isNumeric() && rightExpr.isNumeric()) {
+			NumberExpression left = number(leftExpr);
+			NumberExpression right = number(rightExpr);
+			switch (operator.getType()) {
+			case EQUAL_EQUAL:
+				// same as Double.equals
+				return runtime -> Double.doubleToLongBits(left.evaluate(runtime)) == Double
+						.doubleToLongBits(right.evaluate(runtime));
+			case BANG_EQUAL:
+				return runtime -> Double.doubleToLongBits(left.evaluate(runtime)) != Double
+						.doubleToLongBits(right.evaluate(runtime));
+			case LESS:
+				return runtime -> Double.compare(left.evaluate(runtime), right.evaluate(runtime)) < 0;
+			case LESS_EQUAL:
+				return runtime -> Double.compare(left.evaluate(runtime), right.evaluate(runtime)) <= 0;
+			case GREATER:
+				return runtime -> Double.compare(left.evaluate(runtime), right.evaluate(runtime)) > 0;
+			default:
+				return runtime -> Double.compare(left.evaluate(runtime), right.evaluate(runtime)) >= 0;
+			}
+		}
+
+		Expression left = compile(leftExpr);
+		Expression right = compile(rightExpr);
+		switch (operator.getType()) {
+		case EQUAL_EQUAL:
+			return runtime -> Interpreter.isEqual(left.evaluate(runtime), right.evaluate(runtime));
+		case BANG_EQUAL:
+			return runtime -> !Interpreter.isEqual(left.evaluate(runtime), right.evaluate(runtime));
+		case LESS:
+			return runtime -> compare(operator, left.evaluate(runtime), right.evaluate(runtime)) < 0;
+		case LESS_EQUAL:
+			return runtime -> compare(operator, left.evaluate(runtime), right.evaluate(runtime)) <= 0;
+		case GREATER:
+			return runtime -> compare(operator, left.evaluate(runtime), right.evaluate(runtime)) > 0;
+		default:
+			return runtime -> compare(operator, left.evaluate(runtime), right.evaluate(runtime)) >= 0;
+		}
+	}
+
+	/*
+	 * STATEMENT VISITOR METHODS
+	 */
+
+	@Override
+	public Statement visit(ExpressionStmt stmt) {
+		Expr expr = stmt.getExpression();
+		if (expr.isNumeric()) {
+			// the result is dropped, never boxed
+			NumberExpression number = number(expr);
+			return runtime -> number.evaluate(runtime);
+		}
+		Expression value = compile(expr);
+		return runtime -> value.evaluate(runtime);
+	}
+
+	@Override
+	public Statement visit(PrintStmt stmt) {
+		Expr expr = stmt.getExpression();
+		if (expr.isNumeric()) {
+			NumberExpression number = number(expr);
+			return runtime -> runtime.out.println(number.evaluate(runtime));
+		}
+		Expression value = compile(expr);
+		return runtime -> {
+			Object result = value.evaluate(runtime);
+			if (result instanceof Double) {
+				runtime.out.println((double) result);
+			} else {
+				runtime.out.println(result.toString());
+			}
+		};
+	}
+
+	@Override
+	public Statement visit(VarDeclareStmt stmt) {
+		Token identifier = stmt.getIdentifier();
+		Symbol name = identifier.getSymbol();
+		boolean local = !blockBases.isEmpty();
+		if (local && stmt.getSlot() < 0) {
+			// a variable of an enclosing block, see Resolver
+			return runtime -> {
+				throw new RuntimeError(identifier, "Variable has been declared: " + identifier.getLexem());
+			};
+		}
+
+		Expr init = stmt.getInitializer();
+		Expression value = init != null ? compile(init) : runtime -> null;
+		if (local) {
+			int index = blockBases.get(blockBases.size() - 1) + stmt.getSlot();
+			return runtime -> {
+				checkUndeclared(runtime, identifier);
+				runtime.slots[index] = value.evaluate(runtime);
+			};
+		}
+		return runtime -> {
+			checkUndeclared(runtime, identifier);
+			runtime.globals.init(name, value.evaluate(runtime));
+		};
+	}
+
+	@Override
+	public Statement visit(BlockStmt block) {
+		int size = block.getSlotCount();
+		if (size > 0) {
+			blockBases.add(slotCount);
+			slotCount += size;
+			maxSlotCount = Math.max(maxSlotCount, slotCount);
+		}
+		List<Statement> compiled = new ArrayList<>();
+		for (Stmt stmt : block.getStatements()) {
+			compiled.add(stmt.accept(this));
+		}
+		if (size > 0) {
+			slotCount = blockBases.remove(blockBases.size() - 1);
+		}
+
+		// the slots need no clearing, a local is always declared before it is read
+		if (compiled.size() == 1) {
+			return compiled.get(0);
+		}
+		Statement[] statements = compiled.toArray(new Statement[0]);
+		return runtime -> {
+			for (Statement statement : statements) {
+				statement.execute(runtime);
+			}
+		};
+	}
+
+	private Expression compile(Expr expr) {
+		return expr.accept(this);
+	}
+
+	private int index(int depth, int slot) {
+		return blockBases.get(blockBases.size() - 1 - depth) + slot;
+	}
+
+	private static void checkUndeclared(ClosureRuntime runtime, Token identifier) {
+		if (runtime.globals.hasVariable(identifier.getSymbol())) {
+			throw new RuntimeError(identifier, "Variable has been declared: " + identifier.getLexem());
+		}
+	}
+
+	private static int compare(Token operator, Object left, Object right) {
+		if (left instanceof Double && right instanceof Double) {
+			return Double.compare((double) left, (double) right);
+		}
+		if (left instanceof CharSequence && right instanceof CharSequence) {
+			return left.toString().compareTo(right.toString());
+		}
+		throw new RuntimeError(operator, "Uncomparable objects " + left.toString() + " vs " + right.toString());
+	}
+
+	private static void checkNumber(Token operator, Object operand) {
+		if (operand instanceof Double) {
+			return;
+		}
+		throw new RuntimeError(operator, "Operand must be number!");
+	}
+
+	private static void checkNumbers(Token operator, Object left, Object right) {
+		if (left instanceof Double && right instanceof Double) {
+			return;
+		}
+		throw new RuntimeError(operator, "Operands must be number!");
+	}
+}
@@ -0,0 +1,52 @@
+package learn.craftinginterpreters.lox.closure;
+
+import java.util.Arrays;
+
+import learn.craftinginterpreters.lox.interpreter.Environment;
+import learn.craftinginterpreters.lox.interpreter.Output;
+
+/**
+ * Execution state of the {@link Program programs} compiled to closures: the
+ * global variables, which outlive a single program as in the REPL, and the
+ * block locals.
+ *
+ * Blocks never outlive their execution, so the locals of all the blocks live
+ * in a single array, at the index the {@link ClosureCompiler} gave them.
+ */
+public class ClosureRuntime {
+
+	final Environment globals;
+	Object[] slots;
+	final Output out;
+
+	/**
+	 * Runtime printing to the standard output.
+	 */
+	public ClosureRuntime() {
+		this(new Output());
+	}
+
+	public ClosureRuntime(Output out) {
+		this.out = out;
+		this.globals = new Environment();
+		this.slots = new Object[16];
+	}
+
+	public Output getOutput() {
+		return out;
+	}
+
+	public void run(Program program) {
+		int slotCount = program.slotCount;
+		if (slotCount > slots.length) {
+			slots = new Object[Math.max(slotCount, slots.length * 2)];
+		}
+		try {
+			for (Program.Statement statement : program.statements) {
+				statement.execute(this);
+			}
+		} finally {
+			Arrays.fill(slots, 0, slotCount, null);
+		}
+	}
+}
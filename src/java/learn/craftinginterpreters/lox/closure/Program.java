@@ -0,0 +1,46 @@
+package learn.craftinginterpreters.lox.closure;
+
+/**
+ * Statements compiled by the {@link ClosureCompiler} into trees of closures,
+ * run by a {@link ClosureRuntime}. A program holds no state of its own, so it
+ * may be run by several runtimes at once.
+ */
+public final class Program {
+
+	static interface Statement {
+		public void execute(ClosureRuntime runtime);
+	}
+
+	static interface Expression {
+		public Object evaluate(ClosureRuntime runtime);
+	}
+
+	/**
+	 * Expression which {@link learn.craftinginterpreters.lox.parser.Expr#isNumeric()
+	 * is numeric}, evaluated on primitive doubles.
+	 */
+	static interface NumberExpression {
+		public double evaluate(ClosureRuntime runtime);
+	}
+
+	/**
+	 * Expression evaluated for its truthiness, such as the condition of a
+	 * ternary, without boxing the booleans.
+	 */
+	static interface Condition {
+		public boolean test(ClosureRuntime runtime);
+	}
+
+	final Statement[] statements;
+	// slots of the block locals, for the most deeply nested blocks
+	final int slotCount;
+
+	Program(Statement[] statements, int slotCount) {
+		this.statements = statements;
+		this.slotCount = slotCount;
+	}
+
+	public int getSlotCount() {
+		return slotCount;
+	}
+}
@@ -0,0 +1,99 @@
+package learn.craftinginterpreters.lox.compiler;
+
+import java.util.Arrays;
+
+/**
+ * A compiled sequence of bytecode with its constant pool and a run-length
+ * encoded line table.
+ */
+public class Chunk {
+
+	private byte[] code;
+	private int count;
+
+	private Object[] constants;
+	private int constantCount;
+
+	// lineStarts[i] is the first code offset emitted for lines[i]
+	private int[] lineStarts;
+	private int[] lines;
+	private int lineCount;
+
+	public Chunk() {
+		code = new byte[64];
+		constants = new Object[16];
+		lineStarts = new int[16];
+		lines = new int[16];
+	}
+
+	public void write(byte b, int line) {
+		if (count == code.length) {
+			code = Arrays.copyOf(code, count * 2);
+		}
+		if (lineCount == 0 || lines[lineCount - 1] != line) {
+			if (lineCount == lines.length) {
+				lineStarts = Arrays.copyOf(lineStarts, lineCount * 2);
+				lines = Arrays.copyOf(lines, lineCount * 2);
+			}
+			lineStarts[lineCount] = count;
+			lines[lineCount] = line;
+			lineCount++;
+		}
+		code[count++] = b;
+	}
+
+	public void writeShort(int value, int line) {
+		write((byte) ((value >> 8) & 0xff), line);
+		write((byte) (value & 0xff), line);
+	}
+
+	/**
+	 * Overwrite a 16 bits operand previously written at the offset.
+	 */
+	public void patchShort(int offset, int value) {
+		code[offset] = (byte) ((value >> 8) & 0xff);
+		code[offset + 1] = (byte) (value & 0xff);
+	}
+
+	public int addConstant(Object value) {
+		if (constantCount == constants.length) {
+			constants = Arrays.copyOf(constants, constantCount * 2);
+		}
+		constants[constantCount] = value;
+		return constantCount++;
+	}
+
+	public byte[] getCode() {
+		return code;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public Object getConstant(int index) {
+		return constants[index];
+	}
+
+	public int getConstantCount() {
+		return constantCount;
+	}
+
+	/**
+	 * @param offset - offset of an instruction in the code
+	 * @return source line the instruction was compiled from
+	 */
+	public int getLine(int offset) {
+		int low = 0;
+		int high = lineCount - 1;
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (lineStarts[mid] <= offset) {
+				low = mid;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return lineCount == 0 ? 0 : lines[low];
+	}
+}
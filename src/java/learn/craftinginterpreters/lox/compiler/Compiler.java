@@ -0,0 +1,303 @@
+package learn.craftinginterpreters.lox.compiler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import learn.craftinginterpreters.lox.RuntimeError;
+import learn.craftinginterpreters.lox.lexer.Token;
+import learn.craftinginterpreters.lox.lexer.Type;
+import learn.craftinginterpreters.lox.parser.Assignment;
+import learn.craftinginterpreters.lox.parser.Binary;
+import learn.craftinginterpreters.lox.parser.BlockStmt;
+import learn.craftinginterpreters.lox.parser.Expr;
+import learn.craftinginterpreters.lox.parser.ExpressionStmt;
+import learn.craftinginterpreters.lox.parser.Grouping;
+import learn.craftinginterpreters.lox.parser.Literal;
+import learn.craftinginterpreters.lox.parser.PrintStmt;
+import learn.craftinginterpreters.lox.parser.Stmt;
+import learn.craftinginterpreters.lox.parser.Ternary;
+import learn.craftinginterpreters.lox.parser.Unary;
+import learn.craftinginterpreters.lox.parser.VarDeclareStmt;
+import learn.craftinginterpreters.lox.parser.Variable;
+
+/**
+ * Lower resolved statements into a {@link Chunk} for the stack based VM.
+ *
+ * Block locals live on the VM stack: the slot bound by the Resolver is an
+ * offset from the stack height at which the block was entered.
+ */
+public class Compiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+
+	private final Chunk chunk;
+	private final Map<Object, Integer> constants;
+	// stack height at the entry of each enclosing block, innermost last
+	private final List<Integer> blockBases;
+	private int localCount;
+	private int line;
+
+	public Compiler() {
+		chunk = new Chunk();
+		constants = new HashMap<>();
+		blockBases = new ArrayList<>();
+		localCount = 0;
+		line = 1;
+	}
+
+	public Chunk compile(List<Stmt> statements) {
+		for (Stmt statement : statements) {
+			statement.accept(this);
+		}
+		emit(OpCode.RETURN);
+		return chunk;
+	}
+
+	/*
+	 * EXPRESSION VISITOR METHODS
+	 */
+
+	@Override
+	public Void visit(Binary expr) {
+		Token operator = expr.getOperator();
+		compile(expr.getLeft());
+		if (operator.match(Type.COMMA)) {
+			line = operator.getLine();
+			emit(OpCode.POP);
+			compile(expr.getRight());
+			return null;
+		}
+		compile(expr.getRight());
+		line = operator.getLine();
+
+		switch (operator.getType()) {
+		case PLUS:
+			emit(OpCode.ADD);
+			break;
+		case MINUS:
+			emit(OpCode.SUBTRACT);
+			break;
+		case STAR:
+			emit(OpCode.MULTIPLY);
+			break;
+		case SLASH:
+			emit(OpCode.DIVIDE);
+			break;
+		case EQUAL_EQUAL:
+			emit(OpCode.EQUAL);
+			break;
+		case BANG_EQUAL:
+			emit(OpCode.NOT_EQUAL);
+			break;
+		case LESS_EQUAL:
+			emit(OpCode.LESS_EQUAL);
+			break;
+		case LESS:
+			emit(OpCode.LESS);
+			break;
+		case GREATER:
+			emit(OpCode.GREATER);
+			break;
+		case GREATER_EQUAL:
+			emit(OpCode.GREATER_EQUAL);
+			break;
+		default:
+			throw new RuntimeError(operator, "Unreachable code in Compiler's Binary.");
+		}
+		return null;
+	}
+
+	@Override
+	public Void visit(Ternary expr) {
+		compile(expr.getCond());
+		int elseJump = emitJump(OpCode.JUMP_IF_FALSE);
+		compile(expr.getLeft());
+		int endJump = emitJump(OpCode.JUMP);
+		patchJump(elseJump);
+		compile(expr.getRight());
+		patchJump(endJump);
+		return null;
+	}
+
+	@Override
+	public Void visit(Grouping expr) {
+		compile(expr.getExpr());
+		return null;
+	}
+
+	@Override
+	public Void visit(Literal expr) {
+		Object value = expr.getValue();
+		if (value == null) {
+			emit(OpCode.NIL);
+		} else if (value.equals(Boolean.TRUE)) {
+			emit(OpCode.TRUE);
+		} else if (value.equals(Boolean.FALSE)) {
+			emit(OpCode.FALSE);
+		} else {
+			emit(OpCode.CONSTANT, constant(value));
+		}
+		return null;
+	}
+
+	@Override
+	public Void visit(Unary expr) {
+		Token operator = expr.getOperator();
+		switch (operator.getType()) {
+		case BANG:
+			compile(expr.getRight());
+			line = operator.getLine();
+			emit(OpCode.NOT);
+			break;
+		case MINUS:
+			compile(expr.getRight());
+			line = operator.getLine();
+			emit(OpCode.NEGATE);
+			break;
+		default:
+			emit(OpCode.NIL);
+		}
+		return null;
+	}
+
+	@Override
+	public Void visit(Variable expr) {
+		Token identifier = expr.getIdentifier();
+		line = identifier.getLine();
+		int depth = expr.getDepth();
+		if (depth >= 0) {
+			emit(OpCode.GET_LOCAL, stackSlot(depth, expr.getSlot()));
+		} else {
+			emit(OpCode.GET_GLOBAL, constant(identifier.getSymbol()));
+		}
+		return null;
+	}
+
+	@Override
+	public Void visit(Assignment expr) {
+		compile(expr.getValue());
+		Token identifier = expr.getIdentifier();
+		line = identifier.getLine();
+		int depth = expr.getDepth();
+		if (depth >= 0) {
+			emit(OpCode.SET_LOCAL, stackSlot(depth, expr.getSlot()));
+		} else {
+			emit(OpCode.SET_GLOBAL, constant(identifier.getSymbol()));
+		}
+		return null;
+	}
+
+	/*
+	 * STATEMENT VISITOR METHODS
+	 */
+
+	@Override
+	public Void visit(ExpressionStmt stmt) {
+		compile(stmt.getExpression());
+		emit(OpCode.POP);
+		return null;
+	}
+
+	@Override
+	public Void visit(PrintStmt stmt) {
+		compile(stmt.getExpression());
+		emit(OpCode.PRINT);
+		return null;
+	}
+
+	@Override
+	public Void visit(VarDeclareStmt stmt) {
+		Token identifier = stmt.getIdentifier();
+		line = identifier.getLine();
+		int name = constant(identifier.getSymbol());
+		boolean local = !blockBases.isEmpty();
+		if (local && stmt.getSlot() < 0) {
+			emit(OpCode.REDECLARED, name);
+			return null;
+		}
+
+		emit(OpCode.CHECK_UNDECLARED, name);
+		Expr init = stmt.getInitializer();
+		if (init != null) {
+			compile(init);
+		} else {
+			emit(OpCode.NIL);
+		}
+		if (local) {
+			// the value stays on the stack as the local's slot
+			localCount++;
+		} else {
+			line = identifier.getLine();
+			emit(OpCode.DEFINE_GLOBAL, name);
+		}
+		return null;
+	}
+
+	@Override
+	public Void visit(BlockStmt block) {
+		if (block.getSlotCount() == 0) {
+			// no scope of its own, see Resolver
+			for (Stmt stmt : block.getStatements()) {
+				stmt.accept(this);
+			}
+			return null;
+		}
+
+		blockBases.add(localCount);
+		for (Stmt stmt : block.getStatements()) {
+			stmt.accept(this);
+		}
+		int base = blockBases.remove(blockBases.size() - 1);
+		if (localCount > base) {
+			emit(OpCode.POPN, localCount - base);
+		}
+		localCount = base;
+		return null;
+	}
+
+	private void compile(Expr expr) {
+		expr.accept(this);
+	}
+
+	private int stackSlot(int depth, int slot) {
+		return blockBases.get(blockBases.size() - 1 - depth) + slot;
+	}
+
+	private int constant(Object value) {
+		Integer index = constants.get(value);
+		if (index == null) {
+			if (chunk.getConstantCount() > 0xffff) {
+				throw new RuntimeError(null, "Too many constants in one chunk.");
+			}
+			index = chunk.addConstant(value);
+			constants.put(value, index);
+		}
+		return index;
+	}
+
+	private void emit(byte op) {
+		chunk.write(op, line);
+	}
+
+	private void emit(byte op, int operand) {
+		chunk.write(op, line);
+		chunk.writeShort(operand, line);
+	}
+
+	/**
+	 * @return offset of the jump operand to patch
+	 */
+	private int emitJump(byte op) {
+		emit(op, 0xffff);
+		return chunk.getCount() - 2;
+	}
+
+	private void patchJump(int offset) {
+		// jump from the end of the operand
+		int jump = chunk.getCount() - offset - 2;
+		if (jump > 0xffff) {
+			throw new RuntimeError(null, "Too much code to jump over.");
+		}
+		chunk.patchShort(offset, jump);
+	}
+}
@@ -0,0 +1,50 @@
+package learn.craftinginterpreters.lox.compiler;
+
+/**
+ * Instruction set of the {@link Chunk}. Operands follow the opcode as unsigned
+ * 16 bits big-endian values.
+ */
+public final class OpCode {
+
+	// Constants.
+	public static final byte CONSTANT = 0; // u16 constant index
+	public static final byte NIL = 1;
+	public static final byte TRUE = 2;
+	public static final byte FALSE = 3;
+
+	// Stack.
+	public static final byte POP = 4;
+	public static final byte POPN = 5; // u16 count
+
+	// Variables.
+	public static final byte GET_LOCAL = 6; // u16 stack slot
+	public static final byte SET_LOCAL = 7; // u16 stack slot
+	public static final byte GET_GLOBAL = 8; // u16 name constant
+	public static final byte SET_GLOBAL = 9; // u16 name constant
+	public static final byte DEFINE_GLOBAL = 10; // u16 name constant
+	public static final byte CHECK_UNDECLARED = 11; // u16 name constant
+	public static final byte REDECLARED = 12; // u16 name constant
+
+	// Operators.
+	public static final byte EQUAL = 13;
+	public static final byte NOT_EQUAL = 14;
+	public static final byte GREATER = 15;
+	public static final byte GREATER_EQUAL = 16;
+	public static final byte LESS = 17;
+	public static final byte LESS_EQUAL = 18;
+	public static final byte ADD = 19;
+	public static final byte SUBTRACT = 20;
+	public static final byte MULTIPLY = 21;
+	public static final byte DIVIDE = 22;
+	public static final byte NOT = 23;
+	public static final byte NEGATE = 24;
+
+	// Statements and control flow.
+	public static final byte PRINT = 25;
+	public static final byte JUMP = 26; // u16 forward offset
+	public static final byte JUMP_IF_FALSE = 27; // u16 forward offset, pops the condition
+	public static final byte RETURN = 28;
+
+	private OpCode() {
+	}
+}
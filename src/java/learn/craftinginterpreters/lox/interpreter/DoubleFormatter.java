@@ -0,0 +1,257 @@
+package learn.craftinginterpreters.lox.interpreter;
+
+import java.math.BigInteger;
+
+/**
+ * Formatter of the numbers printed or concatenated to strings by Lox programs.
+ * A number is written with the shortest digits which read back as the same
+ * double, laid out as {@link Double#toString(double)} does, except that
+ * integers have no fractional part: 8 rather than 8.0, but still 1.0E10.
+ *
+ * Integers below 10^7 take a fast path. Other numbers are converted with the
+ * Schubfach algorithm by Raffaello Giulietti, straight into a char buffer.
+ */
+public final class DoubleFormatter {
+
+	/**
+	 * Most chars a number is written with, as in -1.2345678901234567E-300.
+	 */
+	public static final int MAX_LENGTH = 24;
+
+	// bits of a double
+	private static final int P = 53;
+	private static final int Q_MIN = -1074;
+	private static final long C_MIN = 1L << (P - 1);
+	private static final long T_MASK = C_MIN - 1;
+	private static final long MASK_63 = (1L << 63) - 1;
+
+	// largest integer printed without exponent
+	private static final double PLAIN_INTEGER_LIMIT = 1e7;
+
+	private DoubleFormatter() {
+	}
+
+	public static String toString(double v) {
+		char[] chars = new char[MAX_LENGTH];
+		return new String(chars, 0, format(v, chars, 0));
+	}
+
+	/**
+	 * Write the number in the buffer, which must have room for
+	 * {@link #MAX_LENGTH} chars at the offset.
+	 *
+	 * @return offset following the last char written
+	 */
+	public static int format(double v, char[] buffer, int offset) {
+		long bits = Double.doubleToRawLongBits(v);
+		int bq = (int) (bits >>> (P - 1)) & 0x7ff;
+		if (bq == 0x7ff) {
+			return append(buffer, offset, v != v ? "NaN" : v > 0 ? "Infinity" : "-Infinity");
+		}
+
+		int index = offset;
+		if (bits < 0) {
+			buffer[index++] = '-';
+		}
+		double abs = Math.abs(v);
+		if (abs < PLAIN_INTEGER_LIMIT && abs == (int) abs) {
+			return integer(buffer, index, (int) abs);
+		}
+		if (bq == 0) {
+			// subnormal, never printed in practice: the JDK's own digits
+			return append(buffer, offset, Double.toString(v));
+		}
+
+		long c = C_MIN | bits & T_MASK;
+		int q = bq - 1 + Q_MIN;
+		return toDecimal(q, c, buffer, index);
+	}
+
+	/**
+	 * Schubfach: find the shortest decimal in the rounding interval of c 2^q,
+	 * the closest one to c 2^q among those, and write it.
+	 */
+	private static int toDecimal(int q, long c, char[] buffer, int index) {
+		int out = (int) c & 0x1;
+		long cb = c << 2;
+		long cbr = cb + 2;
+		long cbl;
+		int k;
+		if (c != C_MIN) {
+			cbl = cb - 2;
+			k = flog10pow2(q);
+		} else {
+			// the interval below a power of 2 is half as wide
+			cbl = cb - 1;
+			k = flog10threeQuartersPow2(q);
+		}
+		int h = q + flog2pow10(-k) + 2;
+
+		long g1 = Powers.G1[k - Powers.K_MIN];
+		long g0 = Powers.G0[k - Powers.K_MIN];
+		long vb = rop(g1, g0, cb << h);
+		long vbl = rop(g1, g0, cbl << h);
+		long vbr = rop(g1, g0, cbr << h);
+
+		long s = vb >> 2;
+		if (s >= 100) {
+			// one digit less, when in the interval
+			long sp10 = 10 * Math.multiplyHigh(s, 115_292_150_460_684_698L << 4);
+			long tp10 = sp10 + 10;
+			boolean upin = vbl + out <= sp10 << 2;
+			boolean wpin = (tp10 << 2) + out <= vbr;
+			if (upin != wpin) {
+				return toChars(upin ? sp10 : tp10, k, buffer, index);
+			}
+		}
+
+		long t = s + 1;
+		boolean uin = vbl + out <= s << 2;
+		boolean win = (t << 2) + out <= vbr;
+		if (uin != win) {
+			return toChars(uin ? s : t, k, buffer, index);
+		}
+		// both in the interval, the closest one wins, the even one on a tie
+		long cmp = vb - (s + t << 1);
+		return toChars(cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t, k, buffer, index);
+	}
+
+	/**
+	 * @return g cp 2^-127 rounded to odd, g being the approximation of 10^-k
+	 */
+	private static long rop(long g1, long g0, long cp) {
+		long x1 = Math.multiplyHigh(g0, cp);
+		long y0 = g1 * cp;
+		long y1 = Math.multiplyHigh(g1, cp);
+		long z = (y0 >>> 1) + x1;
+		long vbp = y1 + (z >>> 63);
+		return vbp | (z & MASK_63) + MASK_63 >>> 63;
+	}
+
+	/**
+	 * Write f 10^e, laid out as {@link Double#toString(double)} without the
+	 * fractional part of integers.
+	 */
+	private static int toChars(long f, int e, char[] buffer, int index) {
+		while (f % 10 == 0) {
+			f /= 10;
+			e++;
+		}
+		int length = 1;
+		for (long rest = f / 10; rest != 0; rest /= 10) {
+			length++;
+		}
+		// the number is 0.digits 10^point
+		int point = e + length;
+
+		if (0 < point && point <= 7) {
+			if (length <= point) {
+				digits(f, buffer, index, length);
+				index += length;
+				for (int i = length; i < point; i++) {
+					buffer[index++] = '0';
+				}
+				return index;
+			}
+			// written one char further, then the integer part moved back
+			digits(f, buffer, index + 1, length);
+			System.arraycopy(buffer, index + 1, buffer, index, point);
+			buffer[index + point] = '.';
+			return index + length + 1;
+		}
+		if (-3 < point && point <= 0) {
+			buffer[index++] = '0';
+			buffer[index++] = '.';
+			for (int i = point; i < 0; i++) {
+				buffer[index++] = '0';
+			}
+			digits(f, buffer, index, length);
+			return index + length;
+		}
+
+		digits(f, buffer, index + 1, length);
+		buffer[index] = buffer[index + 1];
+		buffer[index + 1] = '.';
+		index += length + 1;
+		if (length == 1) {
+			buffer[index++] = '0';
+		}
+		buffer[index++] = 'E';
+		int exponent = point - 1;
+		if (exponent < 0) {
+			buffer[index++] = '-';
+			exponent = -exponent;
+		}
+		return integer(buffer, index, exponent);
+	}
+
+	private static int integer(char[] buffer, int index, int value) {
+		int length = 1;
+		for (int rest = value / 10; rest != 0; rest /= 10) {
+			length++;
+		}
+		digits(value, buffer, index, length);
+		return index + length;
+	}
+
+	/**
+	 * Write the length last digits of the value, from the last one back.
+	 */
+	private static void digits(long value, char[] buffer, int index, int length) {
+		for (int i = index + length - 1; i >= index; i--) {
+			buffer[i] = (char) ('0' + value % 10);
+			value /= 10;
+		}
+	}
+
+	private static int append(char[] buffer, int index, String text) {
+		text.getChars(0, text.length(), buffer, index);
+		return index + text.length();
+	}
+
+	// floor(log10(2^e))
+	private static int flog10pow2(int e) {
+		return (int) (e * 661_971_961_083L >> 41);
+	}
+
+	// floor(log10(3/4 2^e))
+	private static int flog10threeQuartersPow2(int e) {
+		return (int) (e * 661_971_961_083L + -274_743_187_321L >> 41);
+	}
+
+	// floor(log2(10^e))
+	private static int flog2pow10(int e) {
+		return (int) (e * 913_124_641_741L >> 38);
+	}
+
+	/**
+	 * Approximations of the powers of ten, computed once the first number
+	 * leaves the integer fast path. 10^-k is written beta 2^r with
+	 * 2^125 <= beta < 2^126, and g = floor(beta) + 1 is split into its high 63
+	 * bits G1 and its low 63 bits G0.
+	 */
+	private static final class Powers {
+		static final int K_MIN = -324;
+		static final int K_MAX = 292;
+		static final long[] G1 = new long[K_MAX - K_MIN + 1];
+		static final long[] G0 = new long[K_MAX - K_MIN + 1];
+
+		static {
+			BigInteger mask = BigInteger.ONE.shiftLeft(63).subtract(BigInteger.ONE);
+			for (int k = K_MIN; k <= K_MAX; k++) {
+				BigInteger beta;
+				if (k <= 0) {
+					BigInteger power = BigInteger.TEN.pow(-k);
+					int r = power.bitLength() - 126;
+					beta = r >= 0 ? power.shiftRight(r) : power.shiftLeft(-r);
+				} else {
+					BigInteger power = BigInteger.TEN.pow(k);
+					beta = BigInteger.ONE.shiftLeft(125 + power.bitLength()).divide(power);
+				}
+				BigInteger g = beta.add(BigInteger.ONE);
+				G1[k - K_MIN] = g.shiftRight(63).longValueExact();
+				G0[k - K_MIN] = g.and(mask).longValueExact();
+			}
+		}
+	}
+}
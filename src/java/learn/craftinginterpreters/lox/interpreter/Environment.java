@@ -4,11 +4,15 @@ import java.util.HashMap;
 import java.util.Map;
 
 import learn.craftinginterpreters.lox.RuntimeError;
+import learn.craftinginterpreters.lox.lexer.Symbol;
 import learn.craftinginterpreters.lox.lexer.Token;
 
+/**
+ * Scope of global variables, keyed by interned {@link Symbol}.
+ */
 public class Environment {
 	private final Environment parent;
-	private final Map<String, Object> variables;
+	private final Map<Symbol, Object> variables;
 
 	public Environment() {
 		parent = null;
@@ -20,7 +24,7 @@ public class Environment {
 		variables = new HashMap<>();
 	}
 
-	public boolean hasVariable(String name) {
+	public boolean hasVariable(Symbol name) {
 		if (!variables.containsKey(name)) {
 			if (parent != null) {
 				return parent.hasVariable(name);
@@ -30,28 +34,30 @@ public class Environment {
 		return true;
 	}
 
-	public Object getValue(String name) {
-		if (!variables.containsKey(name)) {
-			if (parent != null) {
-				return parent.getValue(name);
-			}
+	public Object getValue(Symbol name) {
+		Object value = variables.get(name);
+		if (value == null && parent != null && !variables.containsKey(name)) {
+			return parent.getValue(name);
 		}
-		return variables.get(name);
+		return value;
 	}
 
-	public void init(String name) {
+	public void init(Symbol name) {
 		init(name, null);
 	}
 
-	public void init(String name, Object value) {
+	public void init(Symbol name, Object value) {
 		variables.put(name, value);
 	}
 
 	public void assign(Token token, Object value) {
-		if (variables.containsKey(token.getLexem())) {
-			variables.put(token.getLexem(), value);
+		Symbol name = token.getSymbol();
+		if (variables.containsKey(name)) {
+			variables.put(name, value);
+			return;
 		} else if (parent != null) {
 			parent.assign(token, value);
+			return;
 		}
 		throw new RuntimeError(token, "Undeclared variable " + token.getLexem());
 	}
@@ -0,0 +1,184 @@
+package learn.craftinginterpreters.lox.interpreter;
+
+import learn.craftinginterpreters.lox.RuntimeError;
+import learn.craftinginterpreters.lox.lexer.Symbol;
+import learn.craftinginterpreters.lox.lexer.Token;
+
+/**
+ * Evaluator of {@link FlatExpr flat expressions}, with the same semantics and
+ * runtime errors as the {@link Interpreter} it reads and writes variables of.
+ * Numeric nodes are evaluated on primitive doubles, as in the interpreter.
+ */
+public class FlatEvaluator {
+
+	private final Interpreter interpreter;
+
+	public FlatEvaluator(Interpreter interpreter) {
+		this.interpreter = interpreter;
+	}
+
+	public Object evaluate(FlatExpr expr) {
+		return evaluate(expr, expr.root);
+	}
+
+	private Object evaluate(FlatExpr expr, int node) {
+		switch (expr.kinds[node]) {
+		case FlatExpr.LITERAL:
+			return expr.literals[expr.first[node]];
+		case FlatExpr.VARIABLE:
+			return read(expr, node);
+		case FlatExpr.ASSIGNMENT:
+			return assign(expr, node);
+		case FlatExpr.NEGATE:
+		case FlatExpr.SUBTRACT:
+		case FlatExpr.MULTIPLY:
+		case FlatExpr.DIVIDE:
+			return number(expr, node);
+		case FlatExpr.NOT:
+			return !Interpreter.truthy(evaluate(expr, expr.first[node]));
+		case FlatExpr.ADD:
+			return add(expr, node);
+		case FlatExpr.EQUAL:
+			return equal(expr, node);
+		case FlatExpr.NOT_EQUAL:
+			return !equal(expr, node);
+		case FlatExpr.LESS:
+			return compare(expr, node) < 0;
+		case FlatExpr.LESS_EQUAL:
+			return compare(expr, node) <= 0;
+		case FlatExpr.GREATER:
+			return compare(expr, node) > 0;
+		case FlatExpr.GREATER_EQUAL:
+			return compare(expr, node) >= 0;
+		case FlatExpr.SEQUENCE:
+			evaluate(expr, expr.first[node]);
+			return evaluate(expr, expr.second[node]);
+		case FlatExpr.TERNARY:
+			boolean cond = Interpreter.truthy(evaluate(expr, expr.first[node]));
+			return evaluate(expr, cond ? expr.second[node] : expr.third[node]);
+		default:
+			throw new RuntimeError(token(expr, node), "Unreachable code in FlatEvaluator.");
+		}
+	}
+
+	/**
+	 * Evaluate a numeric node without boxing intermediate results.
+	 */
+	private double number(FlatExpr expr, int node) {
+		byte kind = expr.kinds[node];
+		if (kind == FlatExpr.LITERAL) {
+			return (Double) expr.literals[expr.first[node]];
+		}
+		if (kind == FlatExpr.NEGATE) {
+			int operand = expr.first[node];
+			if (expr.numeric[operand]) {
+				return -number(expr, operand);
+			}
+			Object result = evaluate(expr, operand);
+			Interpreter.checkNumber(token(expr, node), result);
+			return -(double) result;
+		}
+
+		int leftNode = expr.first[node];
+		int rightNode = expr.second[node];
+		double left;
+		double right;
+		if (expr.numeric[leftNode] && expr.numeric[rightNode]) {
+			left = number(expr, leftNode);
+			right = number(expr, rightNode);
+		} else {
+			Object l = evaluate(expr, leftNode);
+			Object r = evaluate(expr, rightNode);
+			Interpreter.checkNumbers(token(expr, node), l, r);
+			left = (double) l;
+			right = (double) r;
+		}
+
+		switch (kind) {
+		case FlatExpr.ADD:
+			return left + right;
+		case FlatExpr.SUBTRACT:
+			return left - right;
+		case FlatExpr.MULTIPLY:
+			return left * right;
+		case FlatExpr.DIVIDE:
+			return left / right;
+		default:
+			throw new RuntimeError(token(expr, node), "Unreachable code in FlatEvaluator.");
+		}
+	}
+
+	private Object add(FlatExpr expr, int node) {
+		if (expr.numeric[node]) {
+			return number(expr, node);
+		}
+		Object left = evaluate(expr, expr.first[node]);
+		Object right = evaluate(expr, expr.second[node]);
+		if (left instanceof Double && right instanceof Double) {
+			return (double) left + (double) right;
+		}
+		if (left instanceof CharSequence || right instanceof CharSequence) {
+			return Rope.concat(left, right);
+		}
+		throw new RuntimeError(token(expr, node), "Operands must be either Double or String");
+	}
+
+	private boolean equal(FlatExpr expr, int node) {
+		int leftNode = expr.first[node];
+		int rightNode = expr.second[node];
+		if (expr.numeric[leftNode] && expr.numeric[rightNode]) {
+			// same as Double.equals
+			return Double.doubleToLongBits(number(expr, leftNode)) == Double
+					.doubleToLongBits(number(expr, rightNode));
+		}
+		return Interpreter.isEqual(evaluate(expr, leftNode), evaluate(expr, rightNode));
+	}
+
+	private int compare(FlatExpr expr, int node) {
+		int leftNode = expr.first[node];
+		int rightNode = expr.second[node];
+		if (expr.numeric[leftNode] && expr.numeric[rightNode]) {
+			return Double.compare(number(expr, leftNode), number(expr, rightNode));
+		}
+		Object left = evaluate(expr, leftNode);
+		Object right = evaluate(expr, rightNode);
+		if (left instanceof Double && right instanceof Double) {
+			return Double.compare((double) left, (double) right);
+		}
+		if (left instanceof CharSequence && right instanceof CharSequence) {
+			return left.toString().compareTo(right.toString());
+		}
+		throw new RuntimeError(token(expr, node),
+				"Uncomparable objects " + left.toString() + " vs " + right.toString());
+	}
+
+	private Object read(FlatExpr expr, int node) {
+		int depth = expr.first[node];
+		if (depth >= 0) {
+			return interpreter.locals.getValue(depth, expr.second[node]);
+		}
+		Token identifier = token(expr, node);
+		Symbol name = identifier.getSymbol();
+		Object value = interpreter.globals.getValue(name);
+		if (value == null && !interpreter.globals.hasVariable(name)) {
+			throw interpreter.error(identifier, "Undefined variable " + identifier.getLexem());
+		}
+		return value;
+	}
+
+	private Object assign(FlatExpr expr, int node) {
+		Object value = evaluate(expr, expr.second[node]);
+		int depth = expr.first[node];
+		if (depth >= 0) {
+			interpreter.locals.assign(depth, expr.third[node], value);
+		} else {
+			interpreter.globals.assign(token(expr, node), value);
+		}
+		return value;
+	}
+
+	private static Token token(FlatExpr expr, int node) {
+		int token = expr.tokens[node];
+		return token >= 0 ? expr.tokenPool[token] : null;
+	}
+}
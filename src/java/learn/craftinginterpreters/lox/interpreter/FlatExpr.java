@@ -0,0 +1,221 @@
+package learn.craftinginterpreters.lox.interpreter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import learn.craftinginterpreters.lox.lexer.Token;
+import learn.craftinginterpreters.lox.parser.Assignment;
+import learn.craftinginterpreters.lox.parser.Binary;
+import learn.craftinginterpreters.lox.parser.Expr;
+import learn.craftinginterpreters.lox.parser.Grouping;
+import learn.craftinginterpreters.lox.parser.Literal;
+import learn.craftinginterpreters.lox.parser.Ternary;
+import learn.craftinginterpreters.lox.parser.Unary;
+import learn.craftinginterpreters.lox.parser.Variable;
+
+/**
+ * An expression tree stored as a structure of arrays, evaluated by a
+ * {@link FlatEvaluator}. Each node is an index into parallel primitive arrays
+ * holding its kind and operands, instead of an object pointing to its children
+ * and tokens. Nodes are laid out in post-order, so the root is the last one and
+ * operands sit right before their operator.
+ *
+ * Operands are node indexes, except for literals which index the literal pool
+ * and variables which hold their (depth, slot) binding. The token of a node,
+ * kept for identifiers and error lines, indexes the token pool. Groupings are
+ * dropped. Expressions must be resolved before being flattened.
+ */
+public final class FlatExpr {
+
+	static final byte LITERAL = 0;
+	static final byte VARIABLE = 1;
+	static final byte ASSIGNMENT = 2;
+	static final byte NEGATE = 3;
+	static final byte NOT = 4;
+	static final byte ADD = 5;
+	static final byte SUBTRACT = 6;
+	static final byte MULTIPLY = 7;
+	static final byte DIVIDE = 8;
+	static final byte EQUAL = 9;
+	static final byte NOT_EQUAL = 10;
+	static final byte LESS = 11;
+	static final byte LESS_EQUAL = 12;
+	static final byte GREATER = 13;
+	static final byte GREATER_EQUAL = 14;
+	static final byte SEQUENCE = 15;
+	static final byte TERNARY = 16;
+
+	final byte[] kinds;
+	// whether the node is statically numeric, see Expr#isNumeric()
+	final boolean[] numeric;
+	// left operand or condition, literal index, variable depth
+	final int[] first;
+	// right operand or true branch, variable slot, assigned value
+	final int[] second;
+	// false branch, assigned slot
+	final int[] third;
+	// token index, -1 when none
+	final int[] tokens;
+	final Object[] literals;
+	final Token[] tokenPool;
+	final int root;
+
+	private FlatExpr(Builder builder, int root) {
+		int size = builder.size;
+		this.kinds = Arrays.copyOf(builder.kinds, size);
+		this.numeric = Arrays.copyOf(builder.numeric, size);
+		this.first = Arrays.copyOf(builder.first, size);
+		this.second = Arrays.copyOf(builder.second, size);
+		this.third = Arrays.copyOf(builder.third, size);
+		this.tokens = Arrays.copyOf(builder.tokens, size);
+		this.literals = builder.literals.toArray();
+		this.tokenPool = builder.tokenPool.toArray(new Token[0]);
+		this.root = root;
+	}
+
+	public static FlatExpr flatten(Expr expr) {
+		Builder builder = new Builder();
+		int root = expr.accept(builder);
+		return new FlatExpr(builder, root);
+	}
+
+	/**
+	 * @return number of nodes
+	 */
+	public int size() {
+		return kinds.length;
+	}
+
+	/**
+	 * Appends the nodes of a tree in post-order, returning the index of the node
+	 * visited.
+	 */
+	private static class Builder implements Expr.Visitor<Integer> {
+		private byte[] kinds = new byte[64];
+		private boolean[] numeric = new boolean[64];
+		private int[] first = new int[64];
+		private int[] second = new int[64];
+		private int[] third = new int[64];
+		private int[] tokens = new int[64];
+		private int size = 0;
+		private final List<Object> literals = new ArrayList<>();
+		private final List<Token> tokenPool = new ArrayList<>();
+
+		@Override
+		public Integer visit(Binary expr) {
+			int left = expr.getLeft().accept(this);
+			int right = expr.getRight().accept(this);
+			byte kind;
+			switch (expr.getOperator().getType()) {
+			case PLUS:
+				kind = ADD;
+				break;
+			case MINUS:
+				kind = SUBTRACT;
+				break;
+			case STAR:
+				kind = MULTIPLY;
+				break;
+			case SLASH:
+				kind = DIVIDE;
+				break;
+			case EQUAL_EQUAL:
+				kind = EQUAL;
+				break;
+			case BANG_EQUAL:
+				kind = NOT_EQUAL;
+				break;
+			case LESS:
+				kind = LESS;
+				break;
+			case LESS_EQUAL:
+				kind = LESS_EQUAL;
+				break;
+			case GREATER:
+				kind = GREATER;
+				break;
+			case GREATER_EQUAL:
+				kind = GREATER_EQUAL;
+				break;
+			case COMMA:
+				kind = SEQUENCE;
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown binary operator " + expr.getOperator().getLexem());
+			}
+			return add(kind, expr.isNumeric(), left, right, -1, expr.getOperator());
+		}
+
+		@Override
+		public Integer visit(Ternary expr) {
+			int cond = expr.getCond().accept(this);
+			int left = expr.getLeft().accept(this);
+			int right = expr.getRight().accept(this);
+			return add(TERNARY, false, cond, left, right, null);
+		}
+
+		@Override
+		public Integer visit(Grouping expr) {
+			return expr.getExpr().accept(this);
+		}
+
+		@Override
+		public Integer visit(Literal expr) {
+			literals.add(expr.getValue());
+			return add(LITERAL, expr.isNumeric(), literals.size() - 1, -1, -1, null);
+		}
+
+		@Override
+		public Integer visit(Unary expr) {
+			int right = expr.getRight().accept(this);
+			byte kind;
+			switch (expr.getOperator().getType()) {
+			case MINUS:
+				kind = NEGATE;
+				break;
+			case BANG:
+				kind = NOT;
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown unary operator " + expr.getOperator().getLexem());
+			}
+			return add(kind, expr.isNumeric(), right, -1, -1, expr.getOperator());
+		}
+
+		@Override
+		public Integer visit(Variable expr) {
+			return add(VARIABLE, false, expr.getDepth(), expr.getSlot(), -1, expr.getIdentifier());
+		}
+
+		@Override
+		public Integer visit(Assignment expr) {
+			int value = expr.getValue().accept(this);
+			return add(ASSIGNMENT, false, expr.getDepth(), value, expr.getSlot(), expr.getIdentifier());
+		}
+
+		private int add(byte kind, boolean isNumeric, int a, int b, int c, Token token) {
+			if (size == kinds.length) {
+				int capacity = size * 2;
+				kinds = Arrays.copyOf(kinds, capacity);
+				numeric = Arrays.copyOf(numeric, capacity);
+				first = Arrays.copyOf(first, capacity);
+				second = Arrays.copyOf(second, capacity);
+				third = Arrays.copyOf(third, capacity);
+				tokens = Arrays.copyOf(tokens, capacity);
+			}
+			kinds[size] = kind;
+			numeric[size] = isNumeric;
+			first[size] = a;
+			second[size] = b;
+			third[size] = c;
+			if (token != null) {
+				tokenPool.add(token);
+				tokens[size] = tokenPool.size() - 1;
+			} else {
+				tokens[size] = -1;
+			}
+			return size++;
+		}
+	}
+}
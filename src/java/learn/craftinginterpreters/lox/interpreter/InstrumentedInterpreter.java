@@ -0,0 +1,202 @@
+package learn.craftinginterpreters.lox.interpreter;
+
+import java.util.Arrays;
+
+import learn.craftinginterpreters.lox.Metrics;
+import learn.craftinginterpreters.lox.parser.Assignment;
+import learn.craftinginterpreters.lox.parser.Binary;
+import learn.craftinginterpreters.lox.parser.BlockStmt;
+import learn.craftinginterpreters.lox.parser.Expr;
+import learn.craftinginterpreters.lox.parser.ExpressionStmt;
+import learn.craftinginterpreters.lox.parser.Grouping;
+import learn.craftinginterpreters.lox.parser.Literal;
+import learn.craftinginterpreters.lox.parser.PrintStmt;
+import learn.craftinginterpreters.lox.parser.Ternary;
+import learn.craftinginterpreters.lox.parser.Unary;
+import learn.craftinginterpreters.lox.parser.VarDeclareStmt;
+import learn.craftinginterpreters.lox.parser.Variable;
+
+/**
+ * Interpreter counting the executions of every node and timing them, into a
+ * {@link Profile} in nanoseconds. The instrumentation only lives in this
+ * subclass, so the plain {@link Interpreter} does not pay for it. Metrics are
+ * reported as by its parent.
+ */
+public class InstrumentedInterpreter extends MeteredInterpreter {
+
+	private final Profile profile;
+	private Profile.Frame current;
+	// start time of each frame being executed, and time spent in its children
+	private long[] starts;
+	private long[] children;
+	private int depth;
+
+	public InstrumentedInterpreter(Output out) {
+		this(out, Metrics.NONE);
+	}
+
+	public InstrumentedInterpreter(Output out, Metrics metrics) {
+		super(out, metrics);
+		profile = new Profile("ns", true);
+		current = profile.root;
+		starts = new long[64];
+		children = new long[64];
+		depth = 0;
+	}
+
+	public Profile getProfile() {
+		return profile;
+	}
+
+	/*
+	 * EXPRESSION VISITOR METHODS
+	 */
+
+	@Override
+	public Object visit(Binary expr) {
+		enter(expr);
+		try {
+			return super.visit(expr);
+		} finally {
+			exit();
+		}
+	}
+
+	@Override
+	public Object visit(Ternary expr) {
+		enter(expr);
+		try {
+			return super.visit(expr);
+		} finally {
+			exit();
+		}
+	}
+
+	@Override
+	public Object visit(Grouping expr) {
+		enter(expr);
+		try {
+			return super.visit(expr);
+		} finally {
+			exit();
+		}
+	}
+
+	@Override
+	public Object visit(Literal expr) {
+		enter(expr);
+		try {
+			return super.visit(expr);
+		} finally {
+			exit();
+		}
+	}
+
+	@Override
+	public Object visit(Unary expr) {
+		enter(expr);
+		try {
+			return super.visit(expr);
+		} finally {
+			exit();
+		}
+	}
+
+	@Override
+	public Object visit(Variable expr) {
+		enter(expr);
+		try {
+			return super.visit(expr);
+		} finally {
+			exit();
+		}
+	}
+
+	@Override
+	public Object visit(Assignment expr) {
+		enter(expr);
+		try {
+			return super.visit(expr);
+		} finally {
+			exit();
+		}
+	}
+
+	@Override
+	protected double number(Expr expr) {
+		if (current.node == expr) {
+			// a negation evaluating itself on doubles
+			return super.number(expr);
+		}
+		enter(expr);
+		try {
+			return super.number(expr);
+		} finally {
+			exit();
+		}
+	}
+
+	/*
+	 * STATEMENT VISITOR METHODS
+	 */
+
+	@Override
+	public Void visit(ExpressionStmt stmt) {
+		enter(stmt);
+		try {
+			return super.visit(stmt);
+		} finally {
+			exit();
+		}
+	}
+
+	@Override
+	public Void visit(PrintStmt stmt) {
+		enter(stmt);
+		try {
+			return super.visit(stmt);
+		} finally {
+			exit();
+		}
+	}
+
+	@Override
+	public Void visit(VarDeclareStmt stmt) {
+		enter(stmt);
+		try {
+			return super.visit(stmt);
+		} finally {
+			exit();
+		}
+	}
+
+	@Override
+	public Void visit(BlockStmt block) {
+		enter(block);
+		try {
+			return super.visit(block);
+		} finally {
+			exit();
+		}
+	}
+
+	private void enter(Object node) {
+		current = current.child(node);
+		current.executions++;
+		if (depth == starts.length) {
+			starts = Arrays.copyOf(starts, depth * 2);
+			children = Arrays.copyOf(children, depth * 2);
+		}
+		children[depth] = 0;
+		starts[depth++] = System.nanoTime();
+	}
+
+	private void exit() {
+		long elapsed = System.nanoTime() - starts[--depth];
+		current.self += elapsed - children[depth];
+		if (depth > 0) {
+			children[depth - 1] += elapsed;
+		}
+		current = current.parent;
+	}
+}
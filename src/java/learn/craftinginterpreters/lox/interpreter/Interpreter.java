@@ -1,8 +1,10 @@
 package learn.craftinginterpreters.lox.interpreter;
 
+import java.util.Arrays;
+
 import learn.craftinginterpreters.lox.RuntimeError;
+import learn.craftinginterpreters.lox.lexer.Symbol;
 import learn.craftinginterpreters.lox.lexer.Token;
-import learn.craftinginterpreters.lox.lexer.Type;
 import learn.craftinginterpreters.lox.parser.Assignment;
 import learn.craftinginterpreters.lox.parser.Binary;
 import learn.craftinginterpreters.lox.parser.BlockStmt;
@@ -17,72 +19,54 @@ import learn.craftinginterpreters.lox.parser.Unary;
 import learn.craftinginterpreters.lox.parser.VarDeclareStmt;
 import learn.craftinginterpreters.lox.parser.Variable;
 
+/**
+ * Tree-walking interpreter. Statements must have gone through the
+ * {@link Resolver} before being executed.
+ */
 public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
-	Environment env = new Environment();
+	final Environment globals = new Environment();
+	// scope of the innermost block being executed, null at top level
+	SlotEnvironment locals;
+	// scopes of the enclosing blocks, outermost first, reused once exited
+	private SlotEnvironment[] frames;
+	private int frameCount;
+	private final Output out;
 
+	/**
+	 * Interpreter printing to the standard output.
+	 */
 	public Interpreter() {
+		this(new Output());
+	}
+
+	public Interpreter(Output out) {
+		this.out = out;
+		this.frames = new SlotEnvironment[8];
+		this.frameCount = 0;
+	}
+
+	public Output getOutput() {
+		return out;
+	}
+
+	public Environment getGlobals() {
+		return globals;
 	}
 
 	@Override
 	public Object visit(Binary expr) {
-		Type t = expr.getOperator().getType();
-		Object left = expr.getLeft().accept(this);
-		Object right = expr.getRight().accept(this);
-
-		switch (t) {
-		case PLUS: {
-			if (left instanceof Double && right instanceof Double) {
-				return (double) left + (double) right;
-			}
-			if (left instanceof String || right instanceof String) {
-				return left.toString() + right.toString();
-			}
-			throw new RuntimeError(expr.getOperator(), "Operands must be either Double or String");
-		}
-		case MINUS:
-			checkNumbers(expr.getOperator(), left, right);
-			return (double) left - (double) right;
-		case STAR:
-			checkNumbers(expr.getOperator(), left, right);
-			return (double) left * (double) right;
-		case SLASH:
-			checkNumbers(expr.getOperator(), left, right);
-			return (double) left / (double) right;
-		case EQUAL_EQUAL:
-			return isEqual(left, right);
-		case BANG_EQUAL:
-			return !isEqual(left, right);
-		case COMMA:
-			return right;
-		default:
+		if (expr.isNumeric()) {
+			// only the result of the outermost arithmetic node gets boxed
+			return arithmetic(expr);
 		}
 
-		if (t == Type.LESS_EQUAL || t == Type.LESS || t == Type.GREATER || t == Type.GREATER_EQUAL) {
-			int compare = 0;
-			if (left instanceof Double && right instanceof Double) {
-				compare = ((Double) left).compareTo((Double) right);
-			} else if (left instanceof String && right instanceof String) {
-				compare = ((String) left).compareTo((String) right);
-			} else {
-				throw new RuntimeError(expr.getOperator(),
-						"Uncomparable objects " + left.toString() + " vs " + right.toString());
-			}
-
-			switch (t) {
-			case LESS_EQUAL:
-				return compare <= 0;
-			case LESS:
-				return compare < 0;
-			case GREATER:
-				return compare > 0;
-			case GREATER_EQUAL:
-				return compare >= 0;
-			default:
-			}
+		Specializations.BinaryOperation operation = (Specializations.BinaryOperation) expr.getOperation();
+		if (operation == null) {
+			operation = Specializations.binary(expr);
+			expr.specialize(operation);
 		}
-
-		throw new RuntimeError(expr.getOperator(), "Unreachable code in Interpreter's Binary.");
+		return operation.execute(this, expr);
 	}
 
 	/*
@@ -107,33 +91,88 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
 	@Override
 	public Object visit(Unary expr) {
-		switch (expr.getOperator().getType()) {
-		case BANG:
-			return !truthy(expr.getRight().accept(this));
-		case MINUS: {
-			Object result = expr.getRight().accept(this);
-			checkNumber(expr.getOperator(), result);
-			return -(double) result;
+		Specializations.UnaryOperation operation = (Specializations.UnaryOperation) expr.getOperation();
+		if (operation == null) {
+			operation = Specializations.unary(expr);
+			expr.specialize(operation);
+		}
+		return operation.execute(this, expr);
+	}
+
+	/**
+	 * Evaluate an expression which {@link Expr#isNumeric() is numeric} on
+	 * primitive doubles, without boxing intermediate results.
+	 */
+	protected double number(Expr expr) {
+		if (expr instanceof Binary) {
+			return arithmetic((Binary) expr);
+		}
+		if (expr instanceof Literal) {
+			return (Double) ((Literal) expr).getValue();
+		}
+		if (expr instanceof Grouping) {
+			return number(((Grouping) expr).getExpr());
 		}
+		Unary unary = (Unary) expr;
+		Expr operand = unary.getRight();
+		if (operand.isNumeric()) {
+			return -number(operand);
+		}
+		Object result = operand.accept(this);
+		checkNumber(unary.getOperator(), result);
+		return -(double) result;
+	}
+
+	private double arithmetic(Binary expr) {
+		Token operator = expr.getOperator();
+		Expr leftExpr = expr.getLeft();
+		Expr rightExpr = expr.getRight();
+		double left;
+		double right;
+		if (leftExpr.isNumeric() && rightExpr.isNumeric()) {
+			left = number(leftExpr);
+			right = number(rightExpr);
+		} else {
+			Object l = leftExpr.accept(this);
+			Object r = rightExpr.accept(this);
+			checkNumbers(operator, l, r);
+			left = (double) l;
+			right = (double) r;
+		}
+
+		switch (operator.getType()) {
+		case PLUS:
+			return left + right;
+		case MINUS:
+			return left - right;
+		case STAR:
+			return left * right;
+		case SLASH:
+			return left / right;
 		default:
-			return null;
+			throw new RuntimeError(operator, "Unreachable code in Interpreter's Binary.");
 		}
 	}
 
 	@Override
 	public Object visit(Variable expr) {
-		Token identifier = expr.getIdentifier();
-		String name = identifier.getLexem();
-		if (env.hasVariable(name)) {
-			return env.getValue(name);
+		Specializations.VariableOperation operation = (Specializations.VariableOperation) expr.getOperation();
+		if (operation == null) {
+			operation = Specializations.variable(expr);
+			expr.specialize(operation);
 		}
-		throw error(identifier, "Undefined variable " + name);
+		return operation.execute(this, expr);
 	}
 
 	@Override
 	public Object visit(Assignment expr) {
 		Object value = evaluate(expr.getValue());
-		env.assign(expr.getIdentifier(), value);
+		int depth = expr.getDepth();
+		if (depth >= 0) {
+			locals.assign(depth, expr.getSlot(), value);
+		} else {
+			globals.assign(expr.getIdentifier(), value);
+		}
 		return value;
 	}
 
@@ -150,16 +189,21 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 	@Override
 	public Void visit(PrintStmt expr) {
 		Object value = evaluate(expr.getExpression());
-		System.out.println(value.toString());
+		if (value instanceof Double) {
+			out.println((double) value);
+		} else {
+			out.println(value.toString());
+		}
 		return null;
 	}
 
 	@Override
 	public Void visit(VarDeclareStmt stmt) {
 		Token identifier = stmt.getIdentifier();
-		String name = identifier.getLexem();
-		if (env.hasVariable(name)) {
-			throw error(identifier, "Variable has been declared: " + name);
+		Symbol name = identifier.getSymbol();
+		// an unbound local is a redeclaration of a variable of an enclosing block
+		if ((locals != null && stmt.getSlot() < 0) || globals.hasVariable(name)) {
+			throw error(identifier, "Variable has been declared: " + identifier.getLexem());
 		}
 
 		Object value = null;
@@ -167,37 +211,61 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 		if (init != null) {
 			value = stmt.getInitializer().accept(this);
 		}
-		env.init(name, value);
+		if (locals != null) {
+			locals.init(stmt.getSlot(), value);
+		} else {
+			globals.init(name, value);
+		}
 		return null;
 	}
 	
 	@Override
 	public Void visit(BlockStmt block) {
-		env = new Environment(env);
-		for (Stmt stmt : block.getStatements())
-		{
-			stmt.accept(this);
+		int size = block.getSlotCount();
+		if (size == 0) {
+			// no scope of its own, see Resolver
+			for (Stmt stmt : block.getStatements()) {
+				stmt.accept(this);
+			}
+			return null;
+		}
+
+		SlotEnvironment parent = locals;
+		locals = pushFrame(parent, size);
+		try {
+			for (Stmt stmt : block.getStatements())
+			{
+				stmt.accept(this);
+			}
+		} finally {
+			locals = parent;
+			frameCount--;
 		}
-		env = env.getParent();
 		return null;
 	}
 
-	protected Object evaluate(Expr expr) {
-		if (expr instanceof Binary) {
-			return visit((Binary) expr);
-		} else if (expr instanceof Literal) {
-			return visit((Literal) expr);
-		} else if (expr instanceof Ternary) {
-			return visit((Ternary) expr);
-		} else if (expr instanceof Grouping) {
-			return visit((Grouping) expr);
-		} else if (expr instanceof Variable) {
-			return visit((Variable) expr);
+	/**
+	 * @return the scope of the block entered, reused from a previous block at
+	 *         the same nesting level when large enough
+	 */
+	private SlotEnvironment pushFrame(SlotEnvironment parent, int size) {
+		if (frameCount == frames.length) {
+			frames = Arrays.copyOf(frames, frameCount * 2);
+		}
+		SlotEnvironment frame = frames[frameCount];
+		if (frame == null || !frame.reset(parent, size)) {
+			frame = new SlotEnvironment(parent, size);
+			frames[frameCount] = frame;
 		}
-		throw error(null, "Unhanded expression type");
+		frameCount++;
+		return frame;
+	}
+
+	protected Object evaluate(Expr expr) {
+		return expr.accept(this);
 	}
 
-	protected static boolean truthy(Object object) {
+	public static boolean truthy(Object object) {
 		if (object == null) {
 			return false;
 		}
@@ -207,13 +275,18 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 		return true;
 	}
 
-	protected static boolean isEqual(Object left, Object right) {
+	public static boolean isEqual(Object left, Object right) {
 		if (left == null && right == null) {
 			return true;
 		}
 		if (left == null) {
 			return false;
 		}
+		if (left instanceof Rope || right instanceof Rope) {
+			// strings of either kind, equal by content
+			return left instanceof CharSequence && right instanceof CharSequence
+					&& left.toString().equals(right.toString());
+		}
 		return left.equals(right);
 	}
 
@@ -232,14 +305,14 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 	}
 
 	protected static void checkString(Token operator, Object operand) {
-		if (operand instanceof String) {
+		if (operand instanceof CharSequence) {
 			return;
 		}
 		throw new RuntimeError(operator, "Operand must be string!");
 	}
 
 	protected static void checkStrings(Token operator, Object left, Object right) {
-		if (left instanceof String && right instanceof String) {
+		if (left instanceof CharSequence && right instanceof CharSequence) {
 			return;
 		}
 		throw new RuntimeError(operator, "Operands must be string!");
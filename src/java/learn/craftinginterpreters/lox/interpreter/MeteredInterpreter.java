@@ -0,0 +1,127 @@
+package learn.craftinginterpreters.lox.interpreter;
+
+import learn.craftinginterpreters.lox.Metrics;
+import learn.craftinginterpreters.lox.parser.Assignment;
+import learn.craftinginterpreters.lox.parser.Binary;
+import learn.craftinginterpreters.lox.parser.BlockStmt;
+import learn.craftinginterpreters.lox.parser.Expr;
+import learn.craftinginterpreters.lox.parser.ExpressionStmt;
+import learn.craftinginterpreters.lox.parser.Grouping;
+import learn.craftinginterpreters.lox.parser.Literal;
+import learn.craftinginterpreters.lox.parser.PrintStmt;
+import learn.craftinginterpreters.lox.parser.Ternary;
+import learn.craftinginterpreters.lox.parser.Unary;
+import learn.craftinginterpreters.lox.parser.VarDeclareStmt;
+import learn.craftinginterpreters.lox.parser.Variable;
+
+/**
+ * Interpreter reporting the statements it executes, the expressions it
+ * evaluates and the block scopes it creates to {@link Metrics}.
+ */
+public class MeteredInterpreter extends Interpreter {
+
+	private final Metrics metrics;
+	// number of block scopes entered
+	private int depth;
+	// negation visited, which then evaluates itself on doubles
+	private Expr negation;
+
+	public MeteredInterpreter(Output out, Metrics metrics) {
+		super(out);
+		this.metrics = metrics;
+		this.depth = 0;
+	}
+
+	/*
+	 * EXPRESSION VISITOR METHODS
+	 */
+
+	@Override
+	public Object visit(Binary expr) {
+		metrics.expressionEvaluated();
+		return super.visit(expr);
+	}
+
+	@Override
+	public Object visit(Ternary expr) {
+		metrics.expressionEvaluated();
+		return super.visit(expr);
+	}
+
+	@Override
+	public Object visit(Grouping expr) {
+		metrics.expressionEvaluated();
+		return super.visit(expr);
+	}
+
+	@Override
+	public Object visit(Literal expr) {
+		metrics.expressionEvaluated();
+		return super.visit(expr);
+	}
+
+	@Override
+	public Object visit(Unary expr) {
+		metrics.expressionEvaluated();
+		negation = expr;
+		return super.visit(expr);
+	}
+
+	@Override
+	public Object visit(Variable expr) {
+		metrics.expressionEvaluated();
+		return super.visit(expr);
+	}
+
+	@Override
+	public Object visit(Assignment expr) {
+		metrics.expressionEvaluated();
+		return super.visit(expr);
+	}
+
+	@Override
+	protected double number(Expr expr) {
+		if (expr != negation) {
+			metrics.expressionEvaluated();
+		}
+		negation = null;
+		return super.number(expr);
+	}
+
+	/*
+	 * STATEMENT VISITOR METHODS
+	 */
+
+	@Override
+	public Void visit(ExpressionStmt stmt) {
+		metrics.statementExecuted();
+		return super.visit(stmt);
+	}
+
+	@Override
+	public Void visit(PrintStmt stmt) {
+		metrics.statementExecuted();
+		return super.visit(stmt);
+	}
+
+	@Override
+	public Void visit(VarDeclareStmt stmt) {
+		metrics.statementExecuted();
+		return super.visit(stmt);
+	}
+
+	@Override
+	public Void visit(BlockStmt block) {
+		metrics.statementExecuted();
+		if (block.getSlotCount() == 0) {
+			// runs in the scope of its enclosing block
+			return super.visit(block);
+		}
+		metrics.scopeEntered(++depth);
+		try {
+			return super.visit(block);
+		} finally {
+			depth--;
+		}
+	}
+}
@@ -0,0 +1,213 @@
+package learn.craftinginterpreters.lox.interpreter;
+
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import learn.craftinginterpreters.lox.lexer.Token;
+import learn.craftinginterpreters.lox.lexer.Type;
+import learn.craftinginterpreters.lox.parser.Assignment;
+import learn.craftinginterpreters.lox.parser.Binary;
+import learn.craftinginterpreters.lox.parser.BlockStmt;
+import learn.craftinginterpreters.lox.parser.Expr;
+import learn.craftinginterpreters.lox.parser.ExpressionStmt;
+import learn.craftinginterpreters.lox.parser.Grouping;
+import learn.craftinginterpreters.lox.parser.Literal;
+import learn.craftinginterpreters.lox.parser.PrintStmt;
+import learn.craftinginterpreters.lox.parser.Stmt;
+import learn.craftinginterpreters.lox.parser.Ternary;
+import learn.craftinginterpreters.lox.parser.Unary;
+import learn.craftinginterpreters.lox.parser.VarDeclareStmt;
+import learn.craftinginterpreters.lox.parser.Variable;
+
+/**
+ * Optimization pass run on parsed statements before the {@link Resolver}. It
+ * folds constant subtrees, drops groupings and simplifies arithmetic
+ * identities on numeric operands.
+ *
+ * Constant subtrees are folded by evaluating them, so a folded value is always
+ * what the interpreter would have computed. Subtrees failing to evaluate, such
+ * as 1 - "a", are kept and still fail at runtime on the same line.
+ */
+public class Optimizer implements Expr.Visitor<Expr>, Stmt.Visitor<Stmt> {
+
+	// evaluates constant subtrees, which read no variable and print nothing, so
+	// that the interpreter holds no state they touch and can be shared
+	private static final Interpreter CONSTANTS = new Interpreter(new Output(Writer.nullWriter(), 1));
+
+	public Stmt optimize(Stmt statement) {
+		return statement.accept(this);
+	}
+
+	/*
+	 * EXPRESSION VISITOR METHODS
+	 */
+
+	@Override
+	public Expr visit(Binary expr) {
+		Expr left = optimizeExpr(expr.getLeft());
+		Expr right = optimizeExpr(expr.getRight());
+		Token operator = expr.getOperator();
+
+		if (left instanceof Literal) {
+			if (operator.match(Type.COMMA)) {
+				// the left operand has no effect
+				return right;
+			}
+			if (right instanceof Literal) {
+				return fold(new Binary(left, operator, right));
+			}
+		}
+
+		// arithmetic identities, which hold for every double including -0.0 and NaN
+		switch (operator.getType()) {
+		case STAR:
+			if (left.isNumeric() && isNumber(right, 1)) {
+				return left;
+			}
+			if (isNumber(left, 1) && right.isNumeric()) {
+				return right;
+			}
+			break;
+		case SLASH:
+			if (left.isNumeric() && isNumber(right, 1)) {
+				return left;
+			}
+			break;
+		case MINUS:
+			if (left.isNumeric() && isNumber(right, 0)) {
+				return left;
+			}
+			break;
+		default:
+		}
+
+		if (left == expr.getLeft() && right == expr.getRight()) {
+			return expr;
+		}
+		return new Binary(left, operator, right);
+	}
+
+	@Override
+	public Expr visit(Ternary expr) {
+		Expr cond = optimizeExpr(expr.getCond());
+		if (cond instanceof Literal) {
+			Object value = ((Literal) cond).getValue();
+			return Interpreter.truthy(value) ? optimizeExpr(expr.getLeft()) : optimizeExpr(expr.getRight());
+		}
+
+		Expr left = optimizeExpr(expr.getLeft());
+		Expr right = optimizeExpr(expr.getRight());
+		if (cond == expr.getCond() && left == expr.getLeft() && right == expr.getRight()) {
+			return expr;
+		}
+		return new Ternary(cond, left, right);
+	}
+
+	@Override
+	public Expr visit(Grouping expr) {
+		return optimizeExpr(expr.getExpr());
+	}
+
+	@Override
+	public Expr visit(Literal expr) {
+		return expr;
+	}
+
+	@Override
+	public Expr visit(Unary expr) {
+		Expr right = optimizeExpr(expr.getRight());
+		Token operator = expr.getOperator();
+		if (right instanceof Literal) {
+			return fold(new Unary(operator, right));
+		}
+		// double negation of a number
+		if (operator.match(Type.MINUS) && right instanceof Unary && ((Unary) right).getOperator().match(Type.MINUS)
+				&& ((Unary) right).getRight().isNumeric()) {
+			return ((Unary) right).getRight();
+		}
+
+		if (right == expr.getRight()) {
+			return expr;
+		}
+		return new Unary(operator, right);
+	}
+
+	@Override
+	public Expr visit(Variable expr) {
+		return expr;
+	}
+
+	@Override
+	public Expr visit(Assignment expr) {
+		Expr value = optimizeExpr(expr.getValue());
+		if (value == expr.getValue()) {
+			return expr;
+		}
+		return new Assignment(expr.getIdentifier(), value);
+	}
+
+	/*
+	 * STATEMENT VISITOR METHODS
+	 */
+
+	@Override
+	public Stmt visit(ExpressionStmt stmt) {
+		Expr expr = optimizeExpr(stmt.getExpression());
+		return expr == stmt.getExpression() ? stmt : new ExpressionStmt(expr);
+	}
+
+	@Override
+	public Stmt visit(PrintStmt stmt) {
+		Expr expr = optimizeExpr(stmt.getExpression());
+		return expr == stmt.getExpression() ? stmt : new PrintStmt(expr);
+	}
+
+	@Override
+	public Stmt visit(VarDeclareStmt stmt) {
+		Expr init = stmt.getInitializer();
+		if (init == null) {
+			return stmt;
+		}
+		Expr optimized = optimizeExpr(init);
+		return optimized == init ? stmt : new VarDeclareStmt(stmt.getIdentifier(), optimized);
+	}
+
+	@Override
+	public Stmt visit(BlockStmt block) {
+		List<Stmt> stmts = new ArrayList<>();
+		boolean changed = false;
+		for (Stmt stmt : block.getStatements()) {
+			Stmt optimized = optimize(stmt);
+			changed |= optimized != stmt;
+			stmts.add(optimized);
+		}
+		return changed ? new BlockStmt(block.getOpening(), block.getClosing(), stmts) : block;
+	}
+
+	private Expr optimizeExpr(Expr expr) {
+		return expr.accept(this);
+	}
+
+	/**
+	 * @return the value of an expression over literals, or the expression when
+	 *         evaluating it fails
+	 */
+	private Expr fold(Expr expr) {
+		try {
+			Object value = expr.accept(CONSTANTS);
+			// literals are shared by every run, see Rope
+			return new Literal(value instanceof Rope ? value.toString() : value);
+		} catch (RuntimeException e) {
+			return expr;
+		}
+	}
+
+	private static boolean isNumber(Expr expr, double value) {
+		if (!(expr instanceof Literal)) {
+			return false;
+		}
+		Object literal = ((Literal) expr).getValue();
+		return literal instanceof Double && (double) literal == value;
+	}
+}
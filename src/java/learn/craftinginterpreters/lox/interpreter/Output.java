@@ -0,0 +1,120 @@
+package learn.craftinginterpreters.lox.interpreter;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+/**
+ * Buffered sink for the lines printed by a program. Lines are gathered in a
+ * large buffer and written to the underlying {@link Writer} in batches: when
+ * the buffer is full, or when {@link #flush()} is called, which the owner does
+ * on exit, before a REPL prompt and before reporting an error.
+ */
+public class Output {
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+
+	private final Writer sink;
+	private final char[] buffer;
+	private int size;
+
+	/**
+	 * Output to the standard output.
+	 */
+	public Output() {
+		this(new OutputStreamWriter(System.out, Charset.defaultCharset()), DEFAULT_CAPACITY);
+	}
+
+	public Output(Writer sink) {
+		this(sink, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param sink     - writer receiving the batches
+	 * @param capacity - number of chars buffered before they are written out
+	 */
+	public Output(Writer sink, int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		}
+		this.sink = sink;
+		this.buffer = new char[capacity];
+		this.size = 0;
+	}
+
+	public void print(String text) {
+		int length = text.length();
+		if (length > buffer.length - size) {
+			drain();
+			if (length > buffer.length) {
+				// too large to be buffered
+				write(text);
+				return;
+			}
+		}
+		text.getChars(0, length, buffer, size);
+		size += length;
+	}
+
+	public void println(String text) {
+		print(text);
+		println();
+	}
+
+	public void println() {
+		print(System.lineSeparator());
+	}
+
+	/**
+	 * Print a number as {@link DoubleFormatter} does, formatted right into the
+	 * buffer.
+	 */
+	public void print(double number) {
+		if (DoubleFormatter.MAX_LENGTH > buffer.length - size) {
+			drain();
+			if (DoubleFormatter.MAX_LENGTH > buffer.length) {
+				print(DoubleFormatter.toString(number));
+				return;
+			}
+		}
+		size = DoubleFormatter.format(number, buffer, size);
+	}
+
+	public void println(double number) {
+		print(number);
+		println();
+	}
+
+	/**
+	 * Write out the buffered lines and flush the sink.
+	 */
+	public void flush() {
+		drain();
+		try {
+			sink.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void drain() {
+		if (size == 0) {
+			return;
+		}
+		try {
+			sink.write(buffer, 0, size);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		size = 0;
+	}
+
+	private void write(String text) {
+		try {
+			sink.write(text);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
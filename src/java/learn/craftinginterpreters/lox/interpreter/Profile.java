@@ -0,0 +1,322 @@
+package learn.craftinginterpreters.lox.interpreter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import learn.craftinginterpreters.lox.lexer.Token;
+import learn.craftinginterpreters.lox.parser.Assignment;
+import learn.craftinginterpreters.lox.parser.Binary;
+import learn.craftinginterpreters.lox.parser.BlockStmt;
+import learn.craftinginterpreters.lox.parser.Expr;
+import learn.craftinginterpreters.lox.parser.ExpressionStmt;
+import learn.craftinginterpreters.lox.parser.Grouping;
+import learn.craftinginterpreters.lox.parser.Literal;
+import learn.craftinginterpreters.lox.parser.PrintStmt;
+import learn.craftinginterpreters.lox.parser.Stmt;
+import learn.craftinginterpreters.lox.parser.Ternary;
+import learn.craftinginterpreters.lox.parser.Unary;
+import learn.craftinginterpreters.lox.parser.VarDeclareStmt;
+import learn.craftinginterpreters.lox.parser.Variable;
+
+/**
+ * Profile gathered by an {@link InstrumentedInterpreter} or a
+ * {@link SamplingInterpreter}, as a tree of the executed nodes: each path from
+ * the root is a stack of nodes, weighted by the time spent in its last node in
+ * nanoseconds, or by the number of samples taken in it.
+ *
+ * It is reported as a flat profile per source line and as collapsed stacks, one
+ * line per stack such as {@code block@1;print@2;+@2 1200}, which flame graph
+ * tools read.
+ */
+public class Profile {
+
+	/**
+	 * Node of the tree, for a node of the program executed under its parent.
+	 */
+	static final class Frame {
+		final Object node;
+		final Frame parent;
+		private final Map<Object, Frame> children;
+		long executions;
+		// weight of the frame itself, without its children
+		long self;
+
+		Frame(Object node, Frame parent) {
+			this.node = node;
+			this.parent = parent;
+			this.children = new IdentityHashMap<>();
+		}
+
+		Frame child(Object node) {
+			Frame child = children.get(node);
+			if (child == null) {
+				child = new Frame(node, this);
+				children.put(node, child);
+			}
+			return child;
+		}
+	}
+
+	// line of the statements without any token, such as print 1;
+	private static final int UNKNOWN_LINE = -1;
+
+	private final String unit;
+	private final boolean counted;
+	final Frame root;
+
+	/**
+	 * @param unit    - unit of the weights
+	 * @param counted - whether executions are counted
+	 */
+	Profile(String unit, boolean counted) {
+		this.unit = unit;
+		this.counted = counted;
+		this.root = new Frame(null, null);
+	}
+
+	/**
+	 * Write the weight and executions of each line, heaviest first. The total
+	 * of a line includes the nodes run under it, counted once when the line is
+	 * several times on a stack.
+	 */
+	public void writeFlat(Writer out) throws IOException {
+		Map<Integer, long[]> lines = new HashMap<>();
+		total(root, UNKNOWN_LINE, lines, new HashMap<>());
+		List<Map.Entry<Integer, long[]>> entries = new ArrayList<>(lines.entrySet());
+		entries.sort((a, b) -> Long.compare(b.getValue()[1], a.getValue()[1]));
+
+		long sum = 0;
+		for (long[] stats : lines.values()) {
+			sum += stats[1];
+		}
+		out.write(String.format("Flat profile, in %s%n", unit));
+		out.write(String.format("%8s %12s %8s %14s %14s%n", "line", counted ? "executions" : "", "self %", "self",
+				"total"));
+		for (Map.Entry<Integer, long[]> entry : entries) {
+			long[] stats = entry.getValue();
+			out.write(String.format("%8s %12s %8.2f %14d %14d%n", lineName(entry.getKey()), counted ? stats[0] : "",
+					sum == 0 ? 0.0 : 100.0 * stats[1] / sum, stats[1], stats[2]));
+		}
+	}
+
+	/**
+	 * Write every stack with its weight, in the collapsed format of flame graph
+	 * tools.
+	 */
+	public void writeCollapsed(Writer out) throws IOException {
+		Map<String, Long> stacks = new LinkedHashMap<>();
+		collapse(root, UNKNOWN_LINE, new StringBuilder(), stacks);
+		for (Map.Entry<String, Long> stack : stacks.entrySet()) {
+			out.write(stack.getKey());
+			out.write(' ');
+			out.write(Long.toString(stack.getValue()));
+			out.write('\n');
+		}
+	}
+
+	/**
+	 * @return inclusive weight of the frame
+	 */
+	private static long total(Frame frame, int parentLine, Map<Integer, long[]> lines, Map<Integer, Integer> onStack) {
+		int line = parentLine;
+		long[] stats = null;
+		if (frame.node != null) {
+			line = lineOf(frame.node, parentLine);
+			stats = lines.computeIfAbsent(line, l -> new long[3]);
+			stats[0] += frame.executions;
+			stats[1] += frame.self;
+			onStack.merge(line, 1, Integer::sum);
+		}
+
+		long total = frame.self;
+		for (Frame child : frame.children.values()) {
+			total += total(child, line, lines, onStack);
+		}
+
+		if (stats != null) {
+			if (onStack.merge(line, -1, Integer::sum) == 0) {
+				onStack.remove(line);
+				stats[2] += total;
+			}
+		}
+		return total;
+	}
+
+	private static void collapse(Frame frame, int parentLine, StringBuilder stack, Map<String, Long> stacks) {
+		int length = stack.length();
+		int line = parentLine;
+		if (frame.node != null) {
+			line = lineOf(frame.node, parentLine);
+			if (length > 0) {
+				stack.append(';');
+			}
+			stack.append(nameOf(frame.node)).append('@').append(lineName(line));
+			if (frame.self > 0) {
+				stacks.merge(stack.toString(), frame.self, Long::sum);
+			}
+		}
+		for (Frame child : frame.children.values()) {
+			collapse(child, line, stack, stacks);
+		}
+		stack.setLength(length);
+	}
+
+	private static String lineName(int line) {
+		return line == UNKNOWN_LINE ? "?" : Integer.toString(line);
+	}
+
+	/**
+	 * @return line of the first token of the node, or the line of its parent
+	 *         when it has none, such as a literal
+	 */
+	static int lineOf(Object node, int parentLine) {
+		Integer line = node instanceof Stmt ? ((Stmt) node).accept(LINES) : ((Expr) node).accept(LINES);
+		return line != null ? line : parentLine;
+	}
+
+	static String nameOf(Object node) {
+		if (node instanceof Stmt) {
+			return ((Stmt) node).accept(NAMES);
+		}
+		return ((Expr) node).accept(NAMES);
+	}
+
+	private static final Lines LINES = new Lines();
+	private static final Names NAMES = new Names();
+
+	/**
+	 * Line of the leftmost token of a node, null if it has none.
+	 */
+	private static class Lines implements Expr.Visitor<Integer>, Stmt.Visitor<Integer> {
+		@Override
+		public Integer visit(Binary expr) {
+			Integer line = expr.getLeft().accept(this);
+			return line != null ? line : expr.getOperator().getLine();
+		}
+
+		@Override
+		public Integer visit(Ternary expr) {
+			Integer line = expr.getCond().accept(this);
+			if (line == null) {
+				line = expr.getLeft().accept(this);
+			}
+			return line != null ? line : expr.getRight().accept(this);
+		}
+
+		@Override
+		public Integer visit(Grouping expr) {
+			return expr.getExpr().accept(this);
+		}
+
+		@Override
+		public Integer visit(Literal expr) {
+			return null;
+		}
+
+		@Override
+		public Integer visit(Unary expr) {
+			return expr.getOperator().getLine();
+		}
+
+		@Override
+		public Integer visit(Variable expr) {
+			return expr.getIdentifier().getLine();
+		}
+
+		@Override
+		public Integer visit(Assignment expr) {
+			return expr.getIdentifier().getLine();
+		}
+
+		@Override
+		public Integer visit(ExpressionStmt stmt) {
+			return stmt.getExpression().accept(this);
+		}
+
+		@Override
+		public Integer visit(PrintStmt stmt) {
+			return stmt.getExpression().accept(this);
+		}
+
+		@Override
+		public Integer visit(VarDeclareStmt stmt) {
+			return stmt.getIdentifier().getLine();
+		}
+
+		@Override
+		public Integer visit(BlockStmt block) {
+			return block.getOpening().getLine();
+		}
+	}
+
+	/**
+	 * Frame name of a node, without its line.
+	 */
+	private static class Names implements Expr.Visitor<String>, Stmt.Visitor<String> {
+		@Override
+		public String visit(Binary expr) {
+			return lexeme(expr.getOperator());
+		}
+
+		@Override
+		public String visit(Ternary expr) {
+			return "?:";
+		}
+
+		@Override
+		public String visit(Grouping expr) {
+			return "()";
+		}
+
+		@Override
+		public String visit(Literal expr) {
+			return "literal";
+		}
+
+		@Override
+		public String visit(Unary expr) {
+			return lexeme(expr.getOperator());
+		}
+
+		@Override
+		public String visit(Variable expr) {
+			return lexeme(expr.getIdentifier());
+		}
+
+		@Override
+		public String visit(Assignment expr) {
+			return lexeme(expr.getIdentifier()) + " =";
+		}
+
+		@Override
+		public String visit(ExpressionStmt stmt) {
+			return "expression";
+		}
+
+		@Override
+		public String visit(PrintStmt stmt) {
+			return "print";
+		}
+
+		@Override
+		public String visit(VarDeclareStmt stmt) {
+			return "var " + lexeme(stmt.getIdentifier());
+		}
+
+		@Override
+		public String visit(BlockStmt block) {
+			return "block";
+		}
+
+		private static String lexeme(Token token) {
+			// separators of the collapsed format
+			return token.getLexem().replace(';', '_').replace(' ', '_');
+		}
+	}
+}
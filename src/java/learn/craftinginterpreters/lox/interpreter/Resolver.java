@@ -0,0 +1,197 @@
+package learn.craftinginterpreters.lox.interpreter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import learn.craftinginterpreters.lox.lexer.Symbol;
+import learn.craftinginterpreters.lox.parser.Assignment;
+import learn.craftinginterpreters.lox.parser.Binary;
+import learn.craftinginterpreters.lox.parser.BlockStmt;
+import learn.craftinginterpreters.lox.parser.Expr;
+import learn.craftinginterpreters.lox.parser.ExpressionStmt;
+import learn.craftinginterpreters.lox.parser.Grouping;
+import learn.craftinginterpreters.lox.parser.Literal;
+import learn.craftinginterpreters.lox.parser.PrintStmt;
+import learn.craftinginterpreters.lox.parser.Stmt;
+import learn.craftinginterpreters.lox.parser.Ternary;
+import learn.craftinginterpreters.lox.parser.Unary;
+import learn.craftinginterpreters.lox.parser.VarDeclareStmt;
+import learn.craftinginterpreters.lox.parser.Variable;
+
+/**
+ * Static pass run between parsing and execution. It binds every variable
+ * declared inside a block to a (depth, slot) pair so that the
+ * {@link Interpreter} reads block scopes by index.
+ *
+ * Top-level variables are left unresolved: they live in the global
+ * {@link Environment} which outlives a single run in the REPL, and so are still
+ * looked up by name.
+ */
+public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+
+	// innermost scope is the last one
+	private final List<Map<Symbol, Integer>> scopes;
+
+	public Resolver() {
+		scopes = new ArrayList<>();
+	}
+
+	public void resolve(List<Stmt> statements) {
+		for (Stmt statement : statements) {
+			resolve(statement);
+		}
+	}
+
+	public void resolve(Stmt statement) {
+		statement.accept(this);
+	}
+
+	/*
+	 * EXPRESSION VISITOR METHODS
+	 */
+
+	@Override
+	public Void visit(Binary expr) {
+		resolveExpr(expr.getLeft());
+		resolveExpr(expr.getRight());
+		return null;
+	}
+
+	@Override
+	public Void visit(Ternary expr) {
+		resolveExpr(expr.getCond());
+		resolveExpr(expr.getLeft());
+		resolveExpr(expr.getRight());
+		return null;
+	}
+
+	@Override
+	public Void visit(Grouping expr) {
+		resolveExpr(expr.getExpr());
+		return null;
+	}
+
+	@Override
+	public Void visit(Literal expr) {
+		return null;
+	}
+
+	@Override
+	public Void visit(Unary expr) {
+		resolveExpr(expr.getRight());
+		return null;
+	}
+
+	@Override
+	public Void visit(Variable expr) {
+		Symbol name = expr.getIdentifier().getSymbol();
+		int scope = scopeOf(name);
+		if (scope >= 0) {
+			expr.resolve(scopes.size() - 1 - scope, scopes.get(scope).get(name));
+		}
+		return null;
+	}
+
+	@Override
+	public Void visit(Assignment expr) {
+		resolveExpr(expr.getValue());
+		Symbol name = expr.getIdentifier().getSymbol();
+		int scope = scopeOf(name);
+		if (scope >= 0) {
+			expr.resolve(scopes.size() - 1 - scope, scopes.get(scope).get(name));
+		}
+		return null;
+	}
+
+	/*
+	 * STATEMENT VISITOR METHODS
+	 */
+
+	@Override
+	public Void visit(ExpressionStmt stmt) {
+		resolveExpr(stmt.getExpression());
+		return null;
+	}
+
+	@Override
+	public Void visit(PrintStmt stmt) {
+		resolveExpr(stmt.getExpression());
+		return null;
+	}
+
+	@Override
+	public Void visit(VarDeclareStmt stmt) {
+		Expr init = stmt.getInitializer();
+		if (init != null) {
+			resolveExpr(init);
+		}
+		if (scopes.isEmpty()) {
+			return null;
+		}
+
+		Symbol name = stmt.getIdentifier().getSymbol();
+		if (scopeOf(name) >= 0) {
+			// left unbound, the interpreter reports the redeclaration when it runs
+			return null;
+		}
+		Map<Symbol, Integer> scope = scopes.get(scopes.size() - 1);
+		int slot = scope.size();
+		scope.put(name, slot);
+		stmt.resolve(slot);
+		return null;
+	}
+
+	/**
+	 * A block binding no variable opens no scope: it is left out of the depths
+	 * and runs in the scope of its enclosing block.
+	 */
+	@Override
+	public Void visit(BlockStmt block) {
+		if (!declares(block)) {
+			for (Stmt stmt : block.getStatements()) {
+				resolve(stmt);
+			}
+			block.setSlotCount(0);
+			return null;
+		}
+
+		scopes.add(new HashMap<>());
+		for (Stmt stmt : block.getStatements()) {
+			resolve(stmt);
+		}
+		block.setSlotCount(scopes.remove(scopes.size() - 1).size());
+		return null;
+	}
+
+	/**
+	 * @return whether the block declares a variable which is bound to a slot,
+	 *         that is one not declared by an enclosing block
+	 */
+	private boolean declares(BlockStmt block) {
+		for (Stmt stmt : block.getStatements()) {
+			if (stmt instanceof VarDeclareStmt
+					&& scopeOf(((VarDeclareStmt) stmt).getIdentifier().getSymbol()) < 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void resolveExpr(Expr expr) {
+		expr.accept(this);
+	}
+
+	/**
+	 * @return index of the innermost scope declaring the name, or -1
+	 */
+	private int scopeOf(Symbol name) {
+		for (int i = scopes.size() - 1; i >= 0; i--) {
+			if (scopes.get(i).containsKey(name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
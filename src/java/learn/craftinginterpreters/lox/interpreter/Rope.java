@@ -0,0 +1,116 @@
+package learn.craftinginterpreters.lox.interpreter;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * String value made by concatenation, which keeps both sides instead of
+ * copying them, so that building a long string one piece at a time is linear.
+ * Its characters are only copied together, once, when they are needed, such as
+ * when the string is printed or compared.
+ *
+ * A Lox string is therefore either a {@link String} or a rope: values are
+ * tested as {@link CharSequence}, and compared through their {@link #toString()
+ * flattened} content. Ropes are private to the program which built them, the
+ * {@link Optimizer} never leaves one in a literal.
+ */
+public final class Rope implements CharSequence {
+
+	// concatenations shorter than this are copied right away
+	static final int MIN_LENGTH = 256;
+
+	// both null once flattened
+	private CharSequence left;
+	private CharSequence right;
+	private final int length;
+	private String flat;
+
+	private Rope(CharSequence left, CharSequence right, int length) {
+		this.left = left;
+		this.right = right;
+		this.length = length;
+	}
+
+	/**
+	 * Concatenate two values, one of which at least is a string, the other one
+	 * taken as printed.
+	 *
+	 * @return a {@link String} when short, a rope otherwise
+	 */
+	public static CharSequence concat(Object left, Object right) {
+		CharSequence l = string(left);
+		CharSequence r = string(right);
+		int length = l.length() + r.length();
+		if (length < 0) {
+			throw new OutOfMemoryError("String too long: " + ((long) l.length() + r.length()));
+		}
+		if (length < MIN_LENGTH) {
+			// both sides are short strings
+			return l.toString().concat(r.toString());
+		}
+		return new Rope(l, r, length);
+	}
+
+	private static CharSequence string(Object value) {
+		if (value instanceof CharSequence) {
+			return (CharSequence) value;
+		}
+		if (value instanceof Double) {
+			return DoubleFormatter.toString((double) value);
+		}
+		return value.toString();
+	}
+
+	@Override
+	public int length() {
+		return length;
+	}
+
+	@Override
+	public char charAt(int index) {
+		return toString().charAt(index);
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return toString().subSequence(start, end);
+	}
+
+	/**
+	 * @return the characters of the rope, copied together on the first call
+	 */
+	@Override
+	public String toString() {
+		if (flat == null) {
+			flat = flatten();
+			left = null;
+			right = null;
+		}
+		return flat;
+	}
+
+	/**
+	 * Copy the leaves from the last one to the first one, without recursion
+	 * since ropes built in a loop are as deep as they are long.
+	 */
+	private String flatten() {
+		char[] chars = new char[length];
+		int end = length;
+		Deque<CharSequence> pending = new ArrayDeque<>();
+		pending.push(left);
+		pending.push(right);
+		while (!pending.isEmpty()) {
+			CharSequence next = pending.pop();
+			if (next instanceof Rope && ((Rope) next).flat == null) {
+				Rope rope = (Rope) next;
+				pending.push(rope.left);
+				pending.push(rope.right);
+				continue;
+			}
+			String leaf = next.toString();
+			end -= leaf.length();
+			leaf.getChars(0, leaf.length(), chars, end);
+		}
+		return new String(chars);
+	}
+}
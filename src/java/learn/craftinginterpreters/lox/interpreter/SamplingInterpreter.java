@@ -0,0 +1,143 @@
+package learn.craftinginterpreters.lox.interpreter;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+import learn.craftinginterpreters.lox.Metrics;
+import learn.craftinginterpreters.lox.parser.BlockStmt;
+import learn.craftinginterpreters.lox.parser.ExpressionStmt;
+import learn.craftinginterpreters.lox.parser.PrintStmt;
+import learn.craftinginterpreters.lox.parser.Stmt;
+import learn.craftinginterpreters.lox.parser.VarDeclareStmt;
+
+/**
+ * Interpreter keeping the stack of statements being executed, which a
+ * background thread samples at a fixed interval into a {@link Profile} counted
+ * in samples. Executing a statement only costs pushing it on that stack.
+ *
+ * Samples are taken between {@link #startSampling(long)} and
+ * {@link #stopSampling()}, and read racily: a sample may miss a statement just
+ * pushed, never a statement long running.
+ */
+public class SamplingInterpreter extends MeteredInterpreter {
+
+	private final Profile profile;
+	private Stmt[] frames;
+	// published last, after the frame it covers
+	private volatile int depth;
+	private Thread sampler;
+
+	public SamplingInterpreter(Output out) {
+		this(out, Metrics.NONE);
+	}
+
+	public SamplingInterpreter(Output out, Metrics metrics) {
+		super(out, metrics);
+		profile = new Profile("samples", false);
+		frames = new Stmt[64];
+		depth = 0;
+	}
+
+	/**
+	 * The profile must only be read while not sampling.
+	 */
+	public Profile getProfile() {
+		return profile;
+	}
+
+	/**
+	 * @param interval - time between two samples, in nanoseconds
+	 */
+	public synchronized void startSampling(long interval) {
+		if (sampler != null) {
+			return;
+		}
+		sampler = new Thread(() -> {
+			while (!Thread.currentThread().isInterrupted()) {
+				LockSupport.parkNanos(interval);
+				sample();
+			}
+		}, "lox-sampler");
+		sampler.setDaemon(true);
+		sampler.start();
+	}
+
+	public synchronized void stopSampling() {
+		if (sampler == null) {
+			return;
+		}
+		sampler.interrupt();
+		try {
+			sampler.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		sampler = null;
+	}
+
+	/*
+	 * STATEMENT VISITOR METHODS
+	 */
+
+	@Override
+	public Void visit(ExpressionStmt stmt) {
+		push(stmt);
+		try {
+			return super.visit(stmt);
+		} finally {
+			depth--;
+		}
+	}
+
+	@Override
+	public Void visit(PrintStmt stmt) {
+		push(stmt);
+		try {
+			return super.visit(stmt);
+		} finally {
+			depth--;
+		}
+	}
+
+	@Override
+	public Void visit(VarDeclareStmt stmt) {
+		push(stmt);
+		try {
+			return super.visit(stmt);
+		} finally {
+			depth--;
+		}
+	}
+
+	@Override
+	public Void visit(BlockStmt block) {
+		push(block);
+		try {
+			return super.visit(block);
+		} finally {
+			depth--;
+		}
+	}
+
+	private void push(Stmt stmt) {
+		int top = depth;
+		if (top == frames.length) {
+			frames = Arrays.copyOf(frames, top * 2);
+		}
+		frames[top] = stmt;
+		depth = top + 1;
+	}
+
+	private void sample() {
+		int top = depth;
+		Stmt[] stack = frames;
+		if (top == 0) {
+			return;
+		}
+		Profile.Frame frame = profile.root;
+		for (int i = 0; i < top && i < stack.length; i++) {
+			frame = frame.child(stack[i]);
+		}
+		frame.self++;
+	}
+}
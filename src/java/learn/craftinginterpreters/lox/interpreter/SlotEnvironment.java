@@ -0,0 +1,60 @@
+package learn.craftinginterpreters.lox.interpreter;
+
+import java.util.Arrays;
+
+/**
+ * Array-backed scope of a block. Variables are addressed by the (depth, slot)
+ * pair computed by the {@link Resolver} instead of by name.
+ *
+ * Blocks never outlive their execution, so the {@link Interpreter} keeps one
+ * scope per nesting level and {@link #reset(SlotEnvironment, int) resets} it
+ * for every block entered at that level.
+ */
+public class SlotEnvironment {
+	private SlotEnvironment parent;
+	private final Object[] slots;
+
+	public SlotEnvironment(SlotEnvironment parent, int size) {
+		this.parent = parent;
+		this.slots = new Object[size];
+	}
+
+	/**
+	 * Make this scope a fresh one of the given size, to be reused for another
+	 * block.
+	 * 
+	 * @return false when the scope is too small to hold the variables
+	 */
+	boolean reset(SlotEnvironment parent, int size) {
+		if (size > slots.length) {
+			return false;
+		}
+		this.parent = parent;
+		Arrays.fill(slots, null);
+		return true;
+	}
+
+	public Object getValue(int depth, int slot) {
+		return ancestor(depth).slots[slot];
+	}
+
+	public void init(int slot, Object value) {
+		slots[slot] = value;
+	}
+
+	public void assign(int depth, int slot, Object value) {
+		ancestor(depth).slots[slot] = value;
+	}
+
+	public SlotEnvironment getParent() {
+		return parent;
+	}
+
+	private SlotEnvironment ancestor(int depth) {
+		SlotEnvironment env = this;
+		for (int i = 0; i < depth; i++) {
+			env = env.parent;
+		}
+		return env;
+	}
+}
@@ -0,0 +1,369 @@
+package learn.craftinginterpreters.lox.interpreter;
+
+import learn.craftinginterpreters.lox.RuntimeError;
+import learn.craftinginterpreters.lox.lexer.Symbol;
+import learn.craftinginterpreters.lox.lexer.Token;
+import learn.craftinginterpreters.lox.parser.Binary;
+import learn.craftinginterpreters.lox.parser.Unary;
+import learn.craftinginterpreters.lox.parser.Variable;
+
+/**
+ * Self-specializing behaviors of {@link Binary}, {@link Unary} and
+ * {@link Variable} nodes.
+ *
+ * A node starts with a behavior picked from what is statically known about it.
+ * Operators whose operands are not statically typed rewrite themselves on
+ * their first execution into a version specialized on the operand types they
+ * saw, and go back to the generic version for good when a type guard fails.
+ *
+ * The nodes of a compiled script are shared by every context running it, which
+ * install operations into them with unsynchronized, racing writes. Operations
+ * must therefore be immutable, with final fields only, so that a thread reading
+ * one written by another sees it fully built.
+ */
+final class Specializations {
+
+	private Specializations() {
+	}
+
+	/**
+	 * Behavior of a binary node, stored in its opaque operation slot.
+	 */
+	static interface BinaryOperation {
+		Object execute(Interpreter interpreter, Binary node);
+	}
+
+	static interface UnaryOperation {
+		Object execute(Interpreter interpreter, Unary node);
+	}
+
+	static interface VariableOperation {
+		Object execute(Interpreter interpreter, Variable node);
+	}
+
+	/**
+	 * @return initial behavior of a binary node which is not
+	 *         {@link Binary#isNumeric() numeric}
+	 */
+	static BinaryOperation binary(Binary node) {
+		boolean numbers = node.getLeft().isNumeric() && node.getRight().isNumeric();
+		switch (node.getOperator().getType()) {
+		case PLUS:
+			return UNINITIALIZED_ADD;
+		case EQUAL_EQUAL:
+			return numbers ? new PrimitiveEqual(false) : new Equal(false);
+		case BANG_EQUAL:
+			return numbers ? new PrimitiveEqual(true) : new Equal(true);
+		case LESS:
+			return compare(Comparison.LESS, numbers);
+		case LESS_EQUAL:
+			return compare(Comparison.LESS_EQUAL, numbers);
+		case GREATER:
+			return compare(Comparison.GREATER, numbers);
+		case GREATER_EQUAL:
+			return compare(Comparison.GREATER_EQUAL, numbers);
+		case COMMA:
+			return SEQUENCE;
+		default:
+			return UNREACHABLE;
+		}
+	}
+
+	static UnaryOperation unary(Unary node) {
+		switch (node.getOperator().getType()) {
+		case BANG:
+			return UNINITIALIZED_NOT;
+		case MINUS:
+			return NEGATE;
+		default:
+			return (interpreter, n) -> null;
+		}
+	}
+
+	static VariableOperation variable(Variable node) {
+		return node.getDepth() >= 0 ? LOCAL_READ : GLOBAL_READ;
+	}
+
+	private static BinaryOperation compare(Comparison comparison, boolean numbers) {
+		return numbers ? new PrimitiveCompare(comparison) : new UninitializedCompare(comparison);
+	}
+
+	/*
+	 * BINARY OPERATIONS
+	 */
+
+	/**
+	 * Operation evaluating both operands generically before applying itself.
+	 */
+	private abstract static class EagerOperation implements BinaryOperation {
+		@Override
+		public Object execute(Interpreter interpreter, Binary node) {
+			Object left = node.getLeft().accept(interpreter);
+			Object right = node.getRight().accept(interpreter);
+			return apply(node, left, right);
+		}
+
+		abstract Object apply(Binary node, Object left, Object right);
+
+		/**
+		 * Rewrite the node to its generic operation after a failed guard.
+		 */
+		static Object deoptimize(Binary node, EagerOperation generic, Object left, Object right) {
+			node.specialize(generic);
+			return generic.apply(node, left, right);
+		}
+	}
+
+	private static final EagerOperation ADD = new EagerOperation() {
+		@Override
+		Object apply(Binary node, Object left, Object right) {
+			if (left instanceof Double && right instanceof Double) {
+				return (double) left + (double) right;
+			}
+			if (left instanceof CharSequence || right instanceof CharSequence) {
+				return Rope.concat(left, right);
+			}
+			throw new RuntimeError(node.getOperator(), "Operands must be either Double or String");
+		}
+	};
+
+	private static final EagerOperation NUMBER_ADD = new EagerOperation() {
+		@Override
+		Object apply(Binary node, Object left, Object right) {
+			if (left instanceof Double && right instanceof Double) {
+				return (double) left + (double) right;
+			}
+			return deoptimize(node, ADD, left, right);
+		}
+	};
+
+	private static final EagerOperation STRING_ADD = new EagerOperation() {
+		@Override
+		Object apply(Binary node, Object left, Object right) {
+			if (left instanceof CharSequence || right instanceof CharSequence) {
+				return Rope.concat(left, right);
+			}
+			return deoptimize(node, ADD, left, right);
+		}
+	};
+
+	private static final EagerOperation UNINITIALIZED_ADD = new EagerOperation() {
+		@Override
+		Object apply(Binary node, Object left, Object right) {
+			EagerOperation operation = ADD;
+			if (left instanceof Double && right instanceof Double) {
+				operation = NUMBER_ADD;
+			} else if (left instanceof CharSequence || right instanceof CharSequence) {
+				operation = STRING_ADD;
+			}
+			node.specialize(operation);
+			return operation.apply(node, left, right);
+		}
+	};
+
+	private static final EagerOperation SEQUENCE = new EagerOperation() {
+		@Override
+		Object apply(Binary node, Object left, Object right) {
+			return right;
+		}
+	};
+
+	private static final EagerOperation UNREACHABLE = new EagerOperation() {
+		@Override
+		Object apply(Binary node, Object left, Object right) {
+			throw new RuntimeError(node.getOperator(), "Unreachable code in Interpreter's Binary.");
+		}
+	};
+
+	private static class Equal extends EagerOperation {
+		private final boolean negate;
+
+		Equal(boolean negate) {
+			this.negate = negate;
+		}
+
+		@Override
+		Object apply(Binary node, Object left, Object right) {
+			return Interpreter.isEqual(left, right) != negate;
+		}
+	}
+
+	/**
+	 * Equality of statically numeric operands, evaluated without boxing.
+	 */
+	private static class PrimitiveEqual implements BinaryOperation {
+		private final boolean negate;
+
+		PrimitiveEqual(boolean negate) {
+			this.negate = negate;
+		}
+
+		@Override
+		public Object execute(Interpreter interpreter, Binary node) {
+			double left = interpreter.number(node.getLeft());
+			double right = interpreter.number(node.getRight());
+			// same as Double.equals
+			return (Double.doubleToLongBits(left) == Double.doubleToLongBits(right)) != negate;
+		}
+	}
+
+	private static enum Comparison {
+		LESS {
+			@Override
+			boolean test(int compare) {
+				return compare < 0;
+			}
+		},
+		LESS_EQUAL {
+			@Override
+			boolean test(int compare) {
+				return compare <= 0;
+			}
+		},
+		GREATER {
+			@Override
+			boolean test(int compare) {
+				return compare > 0;
+			}
+		},
+		GREATER_EQUAL {
+			@Override
+			boolean test(int compare) {
+				return compare >= 0;
+			}
+		};
+
+		abstract boolean test(int compare);
+	}
+
+	private static class Compare extends EagerOperation {
+		final Comparison comparison;
+
+		Compare(Comparison comparison) {
+			this.comparison = comparison;
+		}
+
+		@Override
+		Object apply(Binary node, Object left, Object right) {
+			int compare;
+			if (left instanceof Double && right instanceof Double) {
+				compare = Double.compare((double) left, (double) right);
+			} else if (left instanceof CharSequence && right instanceof CharSequence) {
+				compare = left.toString().compareTo(right.toString());
+			} else {
+				throw new RuntimeError(node.getOperator(),
+						"Uncomparable objects " + left.toString() + " vs " + right.toString());
+			}
+			return comparison.test(compare);
+		}
+	}
+
+	private static class NumberCompare extends Compare {
+		NumberCompare(Comparison comparison) {
+			super(comparison);
+		}
+
+		@Override
+		Object apply(Binary node, Object left, Object right) {
+			if (left instanceof Double && right instanceof Double) {
+				return comparison.test(Double.compare((double) left, (double) right));
+			}
+			return deoptimize(node, new Compare(comparison), left, right);
+		}
+	}
+
+	private static class StringCompare extends Compare {
+		StringCompare(Comparison comparison) {
+			super(comparison);
+		}
+
+		@Override
+		Object apply(Binary node, Object left, Object right) {
+			if (left instanceof CharSequence && right instanceof CharSequence) {
+				return comparison.test(left.toString().compareTo(right.toString()));
+			}
+			return deoptimize(node, new Compare(comparison), left, right);
+		}
+	}
+
+	private static class UninitializedCompare extends Compare {
+		UninitializedCompare(Comparison comparison) {
+			super(comparison);
+		}
+
+		@Override
+		Object apply(Binary node, Object left, Object right) {
+			Compare operation;
+			if (left instanceof Double && right instanceof Double) {
+				operation = new NumberCompare(comparison);
+			} else if (left instanceof CharSequence && right instanceof CharSequence) {
+				operation = new StringCompare(comparison);
+			} else {
+				operation = new Compare(comparison);
+			}
+			node.specialize(operation);
+			return operation.apply(node, left, right);
+		}
+	}
+
+	/**
+	 * Comparison of statically numeric operands, evaluated without boxing.
+	 */
+	private static class PrimitiveCompare implements BinaryOperation {
+		private final Comparison comparison;
+
+		PrimitiveCompare(Comparison comparison) {
+			this.comparison = comparison;
+		}
+
+		@Override
+		public Object execute(Interpreter interpreter, Binary node) {
+			double left = interpreter.number(node.getLeft());
+			double right = interpreter.number(node.getRight());
+			return comparison.test(Double.compare(left, right));
+		}
+	}
+
+	/*
+	 * UNARY OPERATIONS
+	 */
+
+	private static final UnaryOperation NEGATE = (interpreter, node) -> interpreter.number(node);
+
+	private static final UnaryOperation NOT = (interpreter, node) -> {
+		return !Interpreter.truthy(node.getRight().accept(interpreter));
+	};
+
+	private static final UnaryOperation BOOLEAN_NOT = (interpreter, node) -> {
+		Object operand = node.getRight().accept(interpreter);
+		if (operand instanceof Boolean) {
+			return !(boolean) operand;
+		}
+		node.specialize(NOT);
+		return !Interpreter.truthy(operand);
+	};
+
+	private static final UnaryOperation UNINITIALIZED_NOT = (interpreter, node) -> {
+		Object operand = node.getRight().accept(interpreter);
+		node.specialize(operand instanceof Boolean ? BOOLEAN_NOT : NOT);
+		return !Interpreter.truthy(operand);
+	};
+
+	/*
+	 * VARIABLE OPERATIONS
+	 */
+
+	private static final VariableOperation LOCAL_READ = (interpreter, node) -> {
+		return interpreter.locals.getValue(node.getDepth(), node.getSlot());
+	};
+
+	private static final VariableOperation GLOBAL_READ = (interpreter, node) -> {
+		Token identifier = node.getIdentifier();
+		Symbol name = identifier.getSymbol();
+		Object value = interpreter.globals.getValue(name);
+		if (value == null && !interpreter.globals.hasVariable(name)) {
+			throw interpreter.error(identifier, "Undefined variable " + identifier.getLexem());
+		}
+		return value;
+	};
+}
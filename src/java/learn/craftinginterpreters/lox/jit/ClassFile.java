@@ -0,0 +1,515 @@
+package learn.craftinginterpreters.lox.jit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal writer of class files, with only what the
+ * {@link StatementCompiler} emits: a constant pool without strings, fields,
+ * and methods made of a Code attribute.
+ *
+ * Classes are written in version 49, the last one checked by the type
+ * inferencing verifier, so that methods need no StackMapTable and branches
+ * are plain offsets.
+ */
+final class ClassFile {
+
+	static final int VERSION = 49;
+
+	// Access flags.
+	static final int ACC_PUBLIC = 0x0001;
+	static final int ACC_PRIVATE = 0x0002;
+	static final int ACC_STATIC = 0x0008;
+	static final int ACC_FINAL = 0x0010;
+	static final int ACC_SUPER = 0x0020;
+
+	// Opcodes.
+	static final int ACONST_NULL = 0x01;
+	static final int ICONST_0 = 0x03;
+	static final int ICONST_1 = 0x04;
+	static final int BIPUSH = 0x10;
+	static final int SIPUSH = 0x11;
+	static final int LDC_W = 0x13;
+	static final int LDC2_W = 0x14;
+	static final int DLOAD = 0x18;
+	static final int ALOAD = 0x19;
+	static final int AALOAD = 0x32;
+	static final int DSTORE = 0x39;
+	static final int ASTORE = 0x3a;
+	static final int POP = 0x57;
+	static final int POP2 = 0x58;
+	static final int DUP = 0x59;
+	static final int DADD = 0x63;
+	static final int DSUB = 0x67;
+	static final int DMUL = 0x6b;
+	static final int DDIV = 0x6f;
+	static final int DNEG = 0x77;
+	static final int IXOR = 0x82;
+	static final int LCMP = 0x94;
+	static final int IFEQ = 0x99;
+	static final int IFNE = 0x9a;
+	static final int IFLT = 0x9b;
+	static final int IFGE = 0x9c;
+	static final int IFGT = 0x9d;
+	static final int IFLE = 0x9e;
+	static final int GOTO = 0xa7;
+	static final int RETURN = 0xb1;
+	static final int GETSTATIC = 0xb2;
+	static final int GETFIELD = 0xb4;
+	static final int PUTFIELD = 0xb5;
+	static final int INVOKEVIRTUAL = 0xb6;
+	static final int INVOKESPECIAL = 0xb7;
+	static final int INVOKESTATIC = 0xb8;
+	static final int INVOKEINTERFACE = 0xb9;
+	static final int ATHROW = 0xbf;
+	static final int WIDE = 0xc4;
+
+	// Constant pool tags.
+	private static final int CONSTANT_UTF8 = 1;
+	private static final int CONSTANT_INTEGER = 3;
+	private static final int CONSTANT_DOUBLE = 6;
+	private static final int CONSTANT_CLASS = 7;
+	private static final int CONSTANT_FIELDREF = 9;
+	private static final int CONSTANT_METHODREF = 10;
+	private static final int CONSTANT_INTERFACE_METHODREF = 11;
+	private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+	private final ByteArrayOutputStream pool;
+	private final DataOutputStream poolOut;
+	private final Map<String, Integer> poolIndexes;
+	private int poolCount;
+
+	private final String name;
+	private final String[] interfaces;
+	// access flags, name and descriptor indexes of each field
+	private final List<int[]> fields;
+	private final List<Code> methods;
+
+	/**
+	 * @param name       - internal name of the class, such as a/b/C
+	 * @param interfaces - internal names of the interfaces it implements
+	 */
+	ClassFile(String name, String... interfaces) {
+		this.pool = new ByteArrayOutputStream();
+		this.poolOut = new DataOutputStream(pool);
+		this.poolIndexes = new HashMap<>();
+		// entry 0 is unused
+		this.poolCount = 1;
+		this.name = name;
+		this.interfaces = interfaces;
+		this.fields = new ArrayList<>();
+		this.methods = new ArrayList<>();
+	}
+
+	String getName() {
+		return name;
+	}
+
+	void field(int access, String name, String descriptor) {
+		fields.add(new int[] { access, utf8(name), utf8(descriptor) });
+	}
+
+	/**
+	 * @return the code of the new method, to be emitted
+	 */
+	Code method(int access, String name, String descriptor) {
+		Code code = new Code(access, utf8(name), utf8(descriptor), (access & ACC_STATIC) == 0, descriptor);
+		methods.add(code);
+		return code;
+	}
+
+	byte[] toByteArray() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		int thisClass = classRef(name);
+		int superClass = classRef("java/lang/Object");
+		int[] interfaceRefs = new int[interfaces.length];
+		for (int i = 0; i < interfaces.length; i++) {
+			interfaceRefs[i] = classRef(interfaces[i]);
+		}
+		int codeName = utf8("Code");
+		if (poolCount > 0xffff) {
+			throw new IllegalStateException("Too many constants in class " + name);
+		}
+		try {
+			out.writeInt(0xCAFEBABE);
+			out.writeShort(0);
+			out.writeShort(VERSION);
+			out.writeShort(poolCount);
+			pool.writeTo(out);
+			out.writeShort(ACC_FINAL | ACC_SUPER);
+			out.writeShort(thisClass);
+			out.writeShort(superClass);
+			out.writeShort(interfaceRefs.length);
+			for (int ref : interfaceRefs) {
+				out.writeShort(ref);
+			}
+			out.writeShort(fields.size());
+			for (int[] field : fields) {
+				out.writeShort(field[0]);
+				out.writeShort(field[1]);
+				out.writeShort(field[2]);
+				// no attribute
+				out.writeShort(0);
+			}
+			out.writeShort(methods.size());
+			for (Code method : methods) {
+				method.writeTo(out, codeName);
+			}
+			// no attribute
+			out.writeShort(0);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/*
+	 * CONSTANT POOL
+	 */
+
+	int utf8(String value) {
+		Integer index = poolIndexes.get("U" + value);
+		if (index != null) {
+			return index;
+		}
+		try {
+			poolOut.writeByte(CONSTANT_UTF8);
+			poolOut.writeUTF(value);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return newEntry("U" + value, 1);
+	}
+
+	int integer(int value) {
+		Integer index = poolIndexes.get("I" + value);
+		if (index != null) {
+			return index;
+		}
+		try {
+			poolOut.writeByte(CONSTANT_INTEGER);
+			poolOut.writeInt(value);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return newEntry("I" + value, 1);
+	}
+
+	int doubleConstant(double value) {
+		long bits = Double.doubleToRawLongBits(value);
+		Integer index = poolIndexes.get("D" + bits);
+		if (index != null) {
+			return index;
+		}
+		try {
+			poolOut.writeByte(CONSTANT_DOUBLE);
+			poolOut.writeLong(bits);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		// doubles take two entries
+		return newEntry("D" + bits, 2);
+	}
+
+	int classRef(String internalName) {
+		Integer index = poolIndexes.get("C" + internalName);
+		if (index != null) {
+			return index;
+		}
+		return reference("C" + internalName, CONSTANT_CLASS, utf8(internalName));
+	}
+
+	int fieldRef(String owner, String name, String descriptor) {
+		return memberRef(CONSTANT_FIELDREF, owner, name, descriptor);
+	}
+
+	int methodRef(String owner, String name, String descriptor, boolean isInterface) {
+		return memberRef(isInterface ? CONSTANT_INTERFACE_METHODREF : CONSTANT_METHODREF, owner, name, descriptor);
+	}
+
+	private int memberRef(int tag, String owner, String name, String descriptor) {
+		String key = "M" + tag + owner + '.' + name + descriptor;
+		Integer index = poolIndexes.get(key);
+		if (index != null) {
+			return index;
+		}
+		int classIndex = classRef(owner);
+		int nameAndType = nameAndType(name, descriptor);
+		return reference(key, tag, classIndex, nameAndType);
+	}
+
+	private int nameAndType(String name, String descriptor) {
+		String key = "N" + name + descriptor;
+		Integer index = poolIndexes.get(key);
+		if (index != null) {
+			return index;
+		}
+		return reference(key, CONSTANT_NAME_AND_TYPE, utf8(name), utf8(descriptor));
+	}
+
+	private int reference(String key, int tag, int... indexes) {
+		try {
+			poolOut.writeByte(tag);
+			for (int index : indexes) {
+				poolOut.writeShort(index);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return newEntry(key, 1);
+	}
+
+	private int newEntry(String key, int size) {
+		int index = poolCount;
+		poolCount += size;
+		poolIndexes.put(key, index);
+		return index;
+	}
+
+	/**
+	 * Target of branches, bound to a position once the code there is emitted.
+	 */
+	static final class Label {
+		private int position = -1;
+		// offsets of the branches to the label emitted before it is bound
+		private int[] branches = new int[2];
+		private int branchCount = 0;
+	}
+
+	/**
+	 * Code of a method. It keeps track of the operand stack height to compute
+	 * the maximum, which the {@link StatementCompiler} resets where branches
+	 * merge.
+	 */
+	final class Code {
+		private final int access;
+		private final int name;
+		private final int descriptor;
+		private byte[] code;
+		private int size;
+		private int stack;
+		private int maxStack;
+		private int maxLocals;
+
+		private Code(int access, int name, int descriptor, boolean instance, String descriptorString) {
+			this.access = access;
+			this.name = name;
+			this.descriptor = descriptor;
+			this.code = new byte[256];
+			this.size = 0;
+			this.stack = 0;
+			this.maxStack = 0;
+			this.maxLocals = (instance ? 1 : 0) + argumentSlots(descriptorString);
+		}
+
+		int size() {
+			return size;
+		}
+
+		/**
+		 * Drop the code emitted from the offset on, which no bound label and
+		 * no pending branch may refer to.
+		 */
+		void truncate(int offset) {
+			size = offset;
+		}
+
+		int getStack() {
+			return stack;
+		}
+
+		void setStack(int stack) {
+			this.stack = stack;
+		}
+
+		void useLocals(int count) {
+			maxLocals = Math.max(maxLocals, count);
+		}
+
+		/**
+		 * @param delta - change of the stack height, in slots
+		 */
+		void op(int opcode, int delta) {
+			write(opcode);
+			adjust(delta);
+		}
+
+		void pushInt(int value) {
+			if (value >= -1 && value <= 5) {
+				write(ICONST_0 + value);
+			} else if (value == (byte) value) {
+				write(BIPUSH);
+				write(value);
+			} else if (value == (short) value) {
+				write(SIPUSH);
+				writeShort(value);
+			} else {
+				write(LDC_W);
+				writeShort(integer(value));
+			}
+			adjust(1);
+		}
+
+		void pushDouble(double value) {
+			write(LDC2_W);
+			writeShort(doubleConstant(value));
+			adjust(2);
+		}
+
+		/**
+		 * Load or store a reference or double local variable.
+		 */
+		void local(int opcode, int index) {
+			if (index > 0xff) {
+				write(WIDE);
+				write(opcode);
+				writeShort(index);
+			} else {
+				write(opcode);
+				write(index);
+			}
+			int slots = opcode == DLOAD || opcode == DSTORE ? 2 : 1;
+			useLocals(index + slots);
+			adjust(opcode == ALOAD || opcode == DLOAD ? slots : -slots);
+		}
+
+		void field(int opcode, String owner, String name, String descriptor) {
+			write(opcode);
+			writeShort(fieldRef(owner, name, descriptor));
+			int slots = slots(descriptor.charAt(0));
+			switch (opcode) {
+			case GETSTATIC:
+				adjust(slots);
+				break;
+			case GETFIELD:
+				adjust(slots - 1);
+				break;
+			default:
+				// PUTFIELD
+				adjust(-slots - 1);
+			}
+		}
+
+		void invoke(int opcode, String owner, String name, String descriptor) {
+			boolean isInterface = opcode == INVOKEINTERFACE;
+			write(opcode);
+			writeShort(methodRef(owner, name, descriptor, isInterface));
+			int arguments = argumentSlots(descriptor) + (opcode == INVOKESTATIC ? 0 : 1);
+			if (isInterface) {
+				write(arguments);
+				write(0);
+			}
+			char result = descriptor.charAt(descriptor.indexOf(')') + 1);
+			adjust(-arguments + (result == 'V' ? 0 : slots(result)));
+		}
+
+		void jump(int opcode, Label label) {
+			int offset = size;
+			write(opcode);
+			writeShort(0);
+			adjust(opcode == GOTO ? 0 : -1);
+			if (label.position >= 0) {
+				patch(offset, label.position);
+			} else {
+				if (label.branchCount == label.branches.length) {
+					label.branches = Arrays.copyOf(label.branches, label.branchCount * 2);
+				}
+				label.branches[label.branchCount++] = offset;
+			}
+		}
+
+		void mark(Label label) {
+			label.position = size;
+			for (int i = 0; i < label.branchCount; i++) {
+				patch(label.branches[i], size);
+			}
+			label.branchCount = 0;
+		}
+
+		private void patch(int offset, int target) {
+			int jump = target - offset;
+			if (jump != (short) jump) {
+				throw new IllegalStateException("Branch too far in class " + ClassFile.this.name);
+			}
+			code[offset + 1] = (byte) (jump >> 8);
+			code[offset + 2] = (byte) jump;
+		}
+
+		private void adjust(int delta) {
+			stack += delta;
+			maxStack = Math.max(maxStack, stack);
+		}
+
+		private void write(int b) {
+			if (size == code.length) {
+				code = Arrays.copyOf(code, size * 2);
+			}
+			code[size++] = (byte) b;
+		}
+
+		private void writeShort(int value) {
+			write(value >> 8);
+			write(value);
+		}
+
+		private void writeTo(DataOutputStream out, int codeName) throws IOException {
+			if (size > 0xffff) {
+				throw new IllegalStateException("Method too large in class " + ClassFile.this.name);
+			}
+			out.writeShort(access);
+			out.writeShort(name);
+			out.writeShort(descriptor);
+			out.writeShort(1);
+			out.writeShort(codeName);
+			// max stack, max locals, code, no exception table, no attribute
+			out.writeInt(2 + 2 + 4 + size + 2 + 2);
+			out.writeShort(maxStack);
+			out.writeShort(maxLocals);
+			out.writeInt(size);
+			out.write(code, 0, size);
+			out.writeShort(0);
+			out.writeShort(0);
+		}
+	}
+
+	/**
+	 * @return slots taken by the arguments of a method descriptor
+	 */
+	private static int argumentSlots(String descriptor) {
+		int slots = 0;
+		int i = 1;
+		while (descriptor.charAt(i) != ')') {
+			char c = descriptor.charAt(i);
+			if (c == '[') {
+				// arrays are references, whatever their elements
+				while (descriptor.charAt(i) == '[') {
+					i++;
+				}
+				if (descriptor.charAt(i) == 'L') {
+					i = descriptor.indexOf(';', i);
+				}
+				i++;
+				slots++;
+			} else if (c == 'L') {
+				i = descriptor.indexOf(';', i) + 1;
+				slots++;
+			} else {
+				slots += slots(c);
+				i++;
+			}
+		}
+		return slots;
+	}
+
+	private static int slots(char type) {
+		return type == 'J' || type == 'D' ? 2 : 1;
+	}
+}
@@ -0,0 +1,17 @@
+package learn.craftinginterpreters.lox.jit;
+
+import learn.craftinginterpreters.lox.interpreter.Environment;
+import learn.craftinginterpreters.lox.interpreter.Output;
+
+/**
+ * Top-level statements compiled to JVM bytecode by the
+ * {@link StatementCompiler}, implemented by a hidden class.
+ */
+interface CompiledStatements {
+
+	/**
+	 * Execute the statements, in the globals of an interpreter and printing to
+	 * its output.
+	 */
+	public void execute(Environment globals, Output out);
+}
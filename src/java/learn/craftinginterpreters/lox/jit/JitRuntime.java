@@ -0,0 +1,126 @@
+package learn.craftinginterpreters.lox.jit;
+
+import learn.craftinginterpreters.lox.RuntimeError;
+import learn.craftinginterpreters.lox.interpreter.Environment;
+import learn.craftinginterpreters.lox.interpreter.Interpreter;
+import learn.craftinginterpreters.lox.interpreter.Output;
+import learn.craftinginterpreters.lox.interpreter.Rope;
+import learn.craftinginterpreters.lox.lexer.Symbol;
+import learn.craftinginterpreters.lox.lexer.Token;
+
+/**
+ * Operations on dynamically typed values called by the compiled statements,
+ * small enough to be inlined by the JVM. They raise the same runtime errors as
+ * the {@link Interpreter}, at the line of the token they are given.
+ */
+final class JitRuntime {
+
+	static final String NAME = "learn/craftinginterpreters/lox/jit/JitRuntime";
+
+	private JitRuntime() {
+	}
+
+	static Object getGlobal(Environment globals, Token identifier) {
+		Symbol name = identifier.getSymbol();
+		Object value = globals.getValue(name);
+		if (value == null && !globals.hasVariable(name)) {
+			throw undefined(identifier);
+		}
+		return value;
+	}
+
+	static Object assignGlobal(Environment globals, Token identifier, Object value) {
+		globals.assign(identifier, value);
+		return value;
+	}
+
+	static void checkUndeclared(Environment globals, Token identifier) {
+		if (globals.hasVariable(identifier.getSymbol())) {
+			throw redeclared(identifier);
+		}
+	}
+
+	static void defineGlobal(Environment globals, Token identifier, Object value) {
+		globals.init(identifier.getSymbol(), value);
+	}
+
+	static RuntimeError redeclared(Token identifier) {
+		return new RuntimeError(identifier, "Variable has been declared: " + identifier.getLexem());
+	}
+
+	/**
+	 * @return never, the error is thrown
+	 */
+	static Object unreachable(Token operator) {
+		throw new RuntimeError(operator, "Unreachable code in Interpreter's Binary.");
+	}
+
+	static Object add(Object left, Object right, Token operator) {
+		if (left instanceof Double && right instanceof Double) {
+			return (double) left + (double) right;
+		}
+		if (left instanceof CharSequence || right instanceof CharSequence) {
+			return Rope.concat(left, right);
+		}
+		throw error(operator, "Operands must be either Double or String");
+	}
+
+	static double subtract(Object left, Object right, Token operator) {
+		checkNumbers(operator, left, right);
+		return (double) left - (double) right;
+	}
+
+	static double multiply(Object left, Object right, Token operator) {
+		checkNumbers(operator, left, right);
+		return (double) left * (double) right;
+	}
+
+	static double divide(Object left, Object right, Token operator) {
+		checkNumbers(operator, left, right);
+		return (double) left / (double) right;
+	}
+
+	static double negate(Object operand, Token operator) {
+		if (operand instanceof Double) {
+			return -(double) operand;
+		}
+		throw error(operator, "Operand must be number!");
+	}
+
+	static int compare(Object left, Object right, Token operator) {
+		if (left instanceof Double && right instanceof Double) {
+			return Double.compare((double) left, (double) right);
+		}
+		if (left instanceof CharSequence && right instanceof CharSequence) {
+			return left.toString().compareTo(right.toString());
+		}
+		throw uncomparable(operator, left, right);
+	}
+
+	static void print(Output out, Object value) {
+		if (value instanceof Double) {
+			out.println((double) value);
+		} else {
+			out.println(value.toString());
+		}
+	}
+
+	private static void checkNumbers(Token operator, Object left, Object right) {
+		if (left instanceof Double && right instanceof Double) {
+			return;
+		}
+		throw error(operator, "Operands must be number!");
+	}
+
+	private static RuntimeError undefined(Token identifier) {
+		return new RuntimeError(identifier, "Undefined variable " + identifier.getLexem());
+	}
+
+	private static RuntimeError uncomparable(Token operator, Object left, Object right) {
+		return new RuntimeError(operator, "Uncomparable objects " + left.toString() + " vs " + right.toString());
+	}
+
+	private static RuntimeError error(Token token, String message) {
+		return new RuntimeError(token, message);
+	}
+}
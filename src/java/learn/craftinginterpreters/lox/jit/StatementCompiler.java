@@ -0,0 +1,656 @@
+package learn.craftinginterpreters.lox.jit;
+
+import static learn.craftinginterpreters.lox.jit.ClassFile.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import learn.craftinginterpreters.lox.interpreter.Interpreter;
+import learn.craftinginterpreters.lox.lexer.Token;
+import learn.craftinginterpreters.lox.lexer.Type;
+import learn.craftinginterpreters.lox.parser.Assignment;
+import learn.craftinginterpreters.lox.parser.Binary;
+import learn.craftinginterpreters.lox.parser.BlockStmt;
+import learn.craftinginterpreters.lox.parser.Expr;
+import learn.craftinginterpreters.lox.parser.ExpressionStmt;
+import learn.craftinginterpreters.lox.parser.Grouping;
+import learn.craftinginterpreters.lox.parser.Literal;
+import learn.craftinginterpreters.lox.parser.PrintStmt;
+import learn.craftinginterpreters.lox.parser.Stmt;
+import learn.craftinginterpreters.lox.parser.Ternary;
+import learn.craftinginterpreters.lox.parser.Unary;
+import learn.craftinginterpreters.lox.parser.VarDeclareStmt;
+import learn.craftinginterpreters.lox.parser.Variable;
+
+/**
+ * Compile consecutive resolved top-level statements into the execute method
+ * of a class implementing {@link CompiledStatements}. Its behavior mirrors the
+ * {@link Interpreter}, including the runtime errors and their lines.
+ *
+ * Numeric expressions are evaluated on primitive doubles and conditions on
+ * primitive booleans, right in the bytecode. Operations on dynamically typed
+ * values call {@link JitRuntime}. Block locals are JVM local variables, since
+ * the blocks of a top-level statement are all compiled with it. Locals never
+ * get assigned, so those initialized with a number stay unboxed doubles.
+ *
+ * Literals and tokens are handed to the instance of the class in arrays,
+ * rather than being written into the class file.
+ */
+final class StatementCompiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+
+	// bytecode size of a method C1 still compiles, it runs out of registers on larger straight-line methods
+	static final int MAX_METHOD_SIZE = 2000;
+
+	private static final String CLASS_NAME = "learn/craftinginterpreters/lox/jit/Statements";
+	private static final String COMPILED_STATEMENTS = "learn/craftinginterpreters/lox/jit/CompiledStatements";
+	private static final String INTERPRETER = "learn/craftinginterpreters/lox/interpreter/Interpreter";
+	private static final String OUTPUT = "learn/craftinginterpreters/lox/interpreter/Output";
+	private static final String TOKEN = "learn/craftinginterpreters/lox/lexer/Token";
+
+	private static final String OBJECT_DESCRIPTOR = "Ljava/lang/Object;";
+	private static final String CONSTANTS_DESCRIPTOR = "[Ljava/lang/Object;";
+	private static final String TOKENS_DESCRIPTOR = "[Llearn/craftinginterpreters/lox/lexer/Token;";
+	private static final String ENVIRONMENT_DESCRIPTOR = "Llearn/craftinginterpreters/lox/interpreter/Environment;";
+	private static final String OUTPUT_DESCRIPTOR = "Llearn/craftinginterpreters/lox/interpreter/Output;";
+	private static final String TOKEN_DESCRIPTOR = "L" + TOKEN + ";";
+	private static final String RUNTIME_ERROR_DESCRIPTOR = "Llearn/craftinginterpreters/lox/RuntimeError;";
+
+	// local variables of the execute method, then the block locals
+	private static final int GLOBALS = 1;
+	private static final int OUT = 2;
+	private static final int CONSTANTS = 3;
+	private static final int TOKENS = 4;
+	// two JVM locals per block local, so that it may hold a double
+	private static final int FIRST_LOCAL = 5;
+
+	private final ClassFile classFile;
+	private final ClassFile.Code code;
+	private final List<Object> constants;
+	private final List<Token> tokens;
+	// index of the constants and tokens in their array
+	private final Map<Object, Integer> indexes;
+	// first block local of each enclosing block, innermost last
+	private final List<Integer> blockBases;
+	private int slotCount;
+	// block locals holding a double rather than a reference, by slot
+	private boolean[] doubleSlots;
+	private int statementCount;
+
+	StatementCompiler() {
+		classFile = new ClassFile(CLASS_NAME, COMPILED_STATEMENTS);
+		constants = new ArrayList<>();
+		tokens = new ArrayList<>();
+		indexes = new IdentityHashMap<>();
+		blockBases = new ArrayList<>();
+		slotCount = 0;
+		doubleSlots = new boolean[8];
+		statementCount = 0;
+
+		classFile.field(ACC_PRIVATE | ACC_FINAL, "constants", CONSTANTS_DESCRIPTOR);
+		classFile.field(ACC_PRIVATE | ACC_FINAL, "tokens", TOKENS_DESCRIPTOR);
+		ClassFile.Code constructor = classFile.method(ACC_PUBLIC, "<init>",
+				"(" + CONSTANTS_DESCRIPTOR + TOKENS_DESCRIPTOR + ")V");
+		constructor.local(ALOAD, 0);
+		constructor.invoke(INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+		constructor.local(ALOAD, 0);
+		constructor.local(ALOAD, 1);
+		constructor.field(PUTFIELD, CLASS_NAME, "constants", CONSTANTS_DESCRIPTOR);
+		constructor.local(ALOAD, 0);
+		constructor.local(ALOAD, 2);
+		constructor.field(PUTFIELD, CLASS_NAME, "tokens", TOKENS_DESCRIPTOR);
+		constructor.op(RETURN, 0);
+
+		code = classFile.method(ACC_PUBLIC, "execute", "(" + ENVIRONMENT_DESCRIPTOR + OUTPUT_DESCRIPTOR + ")V");
+		code.local(ALOAD, 0);
+		code.field(GETFIELD, CLASS_NAME, "constants", CONSTANTS_DESCRIPTOR);
+		code.local(ASTORE, CONSTANTS);
+		code.local(ALOAD, 0);
+		code.field(GETFIELD, CLASS_NAME, "tokens", TOKENS_DESCRIPTOR);
+		code.local(ASTORE, TOKENS);
+	}
+
+	/**
+	 * Compile the statement after the ones already added, unless it makes the
+	 * method too large for the JVM to compile it in turn.
+	 *
+	 * @return false when the statement was left out
+	 */
+	boolean add(Stmt statement) {
+		int mark = code.size();
+		int constantMark = constants.size();
+		int tokenMark = tokens.size();
+		statement.accept(this);
+		if (code.size() > MAX_METHOD_SIZE && statementCount > 0) {
+			code.truncate(mark);
+			while (constants.size() > constantMark) {
+				indexes.remove(constants.remove(constants.size() - 1));
+			}
+			while (tokens.size() > tokenMark) {
+				indexes.remove(tokens.remove(tokens.size() - 1));
+			}
+			return false;
+		}
+		statementCount++;
+		return true;
+	}
+
+	/**
+	 * @return the class file, once all the statements are added
+	 */
+	byte[] toByteArray() {
+		code.op(RETURN, 0);
+		return classFile.toByteArray();
+	}
+
+	/**
+	 * @return the literals to construct the class with
+	 */
+	Object[] getConstants() {
+		return constants.toArray();
+	}
+
+	/**
+	 * @return the tokens to construct the class with, to raise runtime errors
+	 *         and look globals up
+	 */
+	Token[] getTokens() {
+		return tokens.toArray(new Token[0]);
+	}
+
+	/*
+	 * EXPRESSION VISITOR METHODS
+	 */
+
+	@Override
+	public Void visit(Binary expr) {
+		if (isDouble(expr)) {
+			number(expr);
+			boxNumber();
+			return null;
+		}
+
+		Token operator = expr.getOperator();
+		switch (operator.getType()) {
+		case PLUS:
+			compile(expr.getLeft());
+			compile(expr.getRight());
+			token(operator);
+			runtime("add", "(" + OBJECT_DESCRIPTOR + OBJECT_DESCRIPTOR + TOKEN_DESCRIPTOR + ")" + OBJECT_DESCRIPTOR);
+			break;
+		case EQUAL_EQUAL:
+		case BANG_EQUAL:
+		case LESS:
+		case LESS_EQUAL:
+		case GREATER:
+		case GREATER_EQUAL:
+			condition(expr);
+			boxBoolean();
+			break;
+		case COMMA:
+			compile(expr.getLeft());
+			code.op(POP, -1);
+			compile(expr.getRight());
+			break;
+		default:
+			compile(expr.getLeft());
+			code.op(POP, -1);
+			compile(expr.getRight());
+			code.op(POP, -1);
+			token(operator);
+			runtime("unreachable", "(" + TOKEN_DESCRIPTOR + ")" + OBJECT_DESCRIPTOR);
+		}
+		return null;
+	}
+
+	@Override
+	public Void visit(Ternary expr) {
+		ClassFile.Label otherwise = new ClassFile.Label();
+		ClassFile.Label end = new ClassFile.Label();
+		condition(expr.getCond());
+		code.jump(IFEQ, otherwise);
+		int stack = code.getStack();
+		compile(expr.getLeft());
+		code.jump(GOTO, end);
+		code.setStack(stack);
+		code.mark(otherwise);
+		compile(expr.getRight());
+		code.mark(end);
+		return null;
+	}
+
+	@Override
+	public Void visit(Grouping expr) {
+		compile(expr.getExpr());
+		return null;
+	}
+
+	@Override
+	public Void visit(Literal expr) {
+		Object value = expr.getValue();
+		if (value == null) {
+			code.op(ACONST_NULL, 1);
+		} else {
+			constant(value);
+		}
+		return null;
+	}
+
+	@Override
+	public Void visit(Unary expr) {
+		switch (expr.getOperator().getType()) {
+		case BANG:
+			condition(expr);
+			boxBoolean();
+			break;
+		case MINUS:
+			number(expr);
+			boxNumber();
+			break;
+		default:
+			code.op(ACONST_NULL, 1);
+		}
+		return null;
+	}
+
+	@Override
+	public Void visit(Variable expr) {
+		int depth = expr.getDepth();
+		if (depth >= 0) {
+			int slot = slot(depth, expr.getSlot());
+			if (doubleSlots[slot]) {
+				code.local(DLOAD, local(slot));
+				boxNumber();
+			} else {
+				code.local(ALOAD, local(slot));
+			}
+			return null;
+		}
+		code.local(ALOAD, GLOBALS);
+		token(expr.getIdentifier());
+		runtime("getGlobal", "(" + ENVIRONMENT_DESCRIPTOR + TOKEN_DESCRIPTOR + ")" + OBJECT_DESCRIPTOR);
+		return null;
+	}
+
+	@Override
+	public Void visit(Assignment expr) {
+		int depth = expr.getDepth();
+		if (depth >= 0) {
+			int slot = slot(depth, expr.getSlot());
+			if (doubleSlots[slot]) {
+				// the parser never produces assignments, they are only read back from AST images
+				throw new IllegalStateException("Assignment of a double local.");
+			}
+			compile(expr.getValue());
+			code.op(DUP, 1);
+			code.local(ASTORE, local(slot));
+			return null;
+		}
+		code.local(ALOAD, GLOBALS);
+		token(expr.getIdentifier());
+		compile(expr.getValue());
+		runtime("assignGlobal",
+				"(" + ENVIRONMENT_DESCRIPTOR + TOKEN_DESCRIPTOR + OBJECT_DESCRIPTOR + ")" + OBJECT_DESCRIPTOR);
+		return null;
+	}
+
+	/**
+	 * @return whether the expression evaluates to a double, if it does not
+	 *         raise an error: when it {@link Expr#isNumeric() is numeric} or
+	 *         reads a double local
+	 */
+	private boolean isDouble(Expr expr) {
+		if (expr.isNumeric()) {
+			return true;
+		}
+		if (expr instanceof Variable) {
+			Variable variable = (Variable) expr;
+			return variable.getDepth() >= 0 && doubleSlots[slot(variable.getDepth(), variable.getSlot())];
+		}
+		if (expr instanceof Grouping) {
+			return isDouble(((Grouping) expr).getExpr());
+		}
+		if (expr instanceof Binary) {
+			Binary binary = (Binary) expr;
+			return binary.getOperator().match(Type.PLUS) && isDouble(binary.getLeft()) && isDouble(binary.getRight());
+		}
+		return false;
+	}
+
+	/**
+	 * Push the double an expression which {@link #isDouble(Expr) is a double}
+	 * evaluates to, as {@link Interpreter} evaluates it without boxing.
+	 */
+	private void number(Expr expr) {
+		if (expr instanceof Variable) {
+			Variable variable = (Variable) expr;
+			code.local(DLOAD, local(slot(variable.getDepth(), variable.getSlot())));
+		} else if (expr instanceof Binary) {
+			arithmetic((Binary) expr);
+		} else if (expr instanceof Literal) {
+			code.pushDouble((Double) ((Literal) expr).getValue());
+		} else if (expr instanceof Grouping) {
+			number(((Grouping) expr).getExpr());
+		} else {
+			Unary unary = (Unary) expr;
+			Expr operand = unary.getRight();
+			if (isDouble(operand)) {
+				number(operand);
+				code.op(DNEG, 0);
+			} else {
+				compile(operand);
+				token(unary.getOperator());
+				runtime("negate", "(" + OBJECT_DESCRIPTOR + TOKEN_DESCRIPTOR + ")D");
+			}
+		}
+	}
+
+	private void arithmetic(Binary expr) {
+		Token operator = expr.getOperator();
+		Expr left = expr.getLeft();
+		Expr right = expr.getRight();
+		if (isDouble(left) && isDouble(right)) {
+			number(left);
+			number(right);
+			switch (operator.getType()) {
+			case PLUS:
+				code.op(DADD, -2);
+				break;
+			case MINUS:
+				code.op(DSUB, -2);
+				break;
+			case STAR:
+				code.op(DMUL, -2);
+				break;
+			case SLASH:
+				code.op(DDIV, -2);
+				break;
+			default:
+				throw new IllegalStateException("Unreachable code in StatementCompiler's Binary.");
+			}
+			return;
+		}
+
+		// checked once both operands are evaluated
+		compile(left);
+		compile(right);
+		token(operator);
+		String descriptor = "(" + OBJECT_DESCRIPTOR + OBJECT_DESCRIPTOR + TOKEN_DESCRIPTOR + ")D";
+		switch (operator.getType()) {
+		case MINUS:
+			runtime("subtract", descriptor);
+			break;
+		case STAR:
+			runtime("multiply", descriptor);
+			break;
+		case SLASH:
+			runtime("divide", descriptor);
+			break;
+		default:
+			// numeric additions have numeric operands
+			throw new IllegalStateException("Unreachable code in StatementCompiler's Binary.");
+		}
+	}
+
+	/**
+	 * Push the truthiness of an expression as an int. Comparisons and
+	 * negations are tested without boxing, and comparisons of numeric operands
+	 * on primitive doubles.
+	 */
+	private void condition(Expr expr) {
+		if (expr instanceof Grouping) {
+			condition(((Grouping) expr).getExpr());
+			return;
+		}
+		if (expr instanceof Unary && ((Unary) expr).getOperator().match(Type.BANG)) {
+			condition(((Unary) expr).getRight());
+			code.op(ICONST_1, 1);
+			code.op(IXOR, -1);
+			return;
+		}
+		if (expr instanceof Binary) {
+			Binary binary = (Binary) expr;
+			switch (binary.getOperator().getType()) {
+			case EQUAL_EQUAL:
+			case BANG_EQUAL:
+			case LESS:
+			case LESS_EQUAL:
+			case GREATER:
+			case GREATER_EQUAL:
+				comparison(binary);
+				return;
+			default:
+				break;
+			}
+		}
+		compile(expr);
+		code.invoke(INVOKESTATIC, INTERPRETER, "truthy", "(" + OBJECT_DESCRIPTOR + ")Z");
+	}
+
+	private void comparison(Binary expr) {
+		Token operator = expr.getOperator();
+		Expr left = expr.getLeft();
+		Expr right = expr.getRight();
+		boolean equality = operator.match(Type.EQUAL_EQUAL, Type.BANG_EQUAL);
+		if (isDouble(left) && isDouble(right)) {
+			if (equality) {
+				// same as Double.equals
+				number(left);
+				code.invoke(INVOKESTATIC, "java/lang/Double", "doubleToLongBits", "(D)J");
+				number(right);
+				code.invoke(INVOKESTATIC, "java/lang/Double", "doubleToLongBits", "(D)J");
+				code.op(LCMP, -3);
+			} else {
+				number(left);
+				number(right);
+				code.invoke(INVOKESTATIC, "java/lang/Double", "compare", "(DD)I");
+			}
+		} else if (equality) {
+			compile(left);
+			compile(right);
+			code.invoke(INVOKESTATIC, INTERPRETER, "isEqual", "(" + OBJECT_DESCRIPTOR + OBJECT_DESCRIPTOR + ")Z");
+			if (operator.match(Type.BANG_EQUAL)) {
+				code.op(ICONST_1, 1);
+				code.op(IXOR, -1);
+			}
+			return;
+		} else {
+			compile(left);
+			compile(right);
+			token(operator);
+			runtime("compare", "(" + OBJECT_DESCRIPTOR + OBJECT_DESCRIPTOR + TOKEN_DESCRIPTOR + ")I");
+		}
+
+		// the int compared to zero
+		switch (operator.getType()) {
+		case EQUAL_EQUAL:
+			test(IFEQ);
+			break;
+		case BANG_EQUAL:
+			test(IFNE);
+			break;
+		case LESS:
+			test(IFLT);
+			break;
+		case LESS_EQUAL:
+			test(IFLE);
+			break;
+		case GREATER:
+			test(IFGT);
+			break;
+		default:
+			test(IFGE);
+		}
+	}
+
+	/**
+	 * Replace the int on top of the stack by 1 when the branch is taken, 0
+	 * otherwise.
+	 */
+	private void test(int branch) {
+		ClassFile.Label yes = new ClassFile.Label();
+		ClassFile.Label end = new ClassFile.Label();
+		code.jump(branch, yes);
+		int stack = code.getStack();
+		code.op(ICONST_0, 1);
+		code.jump(GOTO, end);
+		code.setStack(stack);
+		code.mark(yes);
+		code.op(ICONST_1, 1);
+		code.mark(end);
+	}
+
+	/*
+	 * STATEMENT VISITOR METHODS
+	 */
+
+	@Override
+	public Void visit(ExpressionStmt stmt) {
+		Expr expr = stmt.getExpression();
+		if (isDouble(expr)) {
+			// the result is dropped, never boxed
+			number(expr);
+			code.op(POP2, -2);
+		} else {
+			compile(expr);
+			code.op(POP, -1);
+		}
+		return null;
+	}
+
+	@Override
+	public Void visit(PrintStmt stmt) {
+		Expr expr = stmt.getExpression();
+		code.local(ALOAD, OUT);
+		if (isDouble(expr)) {
+			number(expr);
+			code.invoke(INVOKEVIRTUAL, OUTPUT, "println", "(D)V");
+		} else {
+			compile(expr);
+			runtime("print", "(" + OUTPUT_DESCRIPTOR + OBJECT_DESCRIPTOR + ")V");
+		}
+		return null;
+	}
+
+	@Override
+	public Void visit(VarDeclareStmt stmt) {
+		Token identifier = stmt.getIdentifier();
+		boolean local = !blockBases.isEmpty();
+		if (local && stmt.getSlot() < 0) {
+			// a variable of an enclosing block, see Resolver
+			token(identifier);
+			runtime("redeclared", "(" + TOKEN_DESCRIPTOR + ")" + RUNTIME_ERROR_DESCRIPTOR);
+			code.op(ATHROW, -1);
+			return null;
+		}
+
+		code.local(ALOAD, GLOBALS);
+		token(identifier);
+		runtime("checkUndeclared", "(" + ENVIRONMENT_DESCRIPTOR + TOKEN_DESCRIPTOR + ")V");
+		if (local) {
+			int slot = slot(0, stmt.getSlot());
+			Expr init = stmt.getInitializer();
+			// the type of the slot holds until the next local declared in it
+			doubleSlots[slot] = init != null && isDouble(init);
+			if (doubleSlots[slot]) {
+				number(init);
+				code.local(DSTORE, local(slot));
+			} else {
+				initializer(stmt);
+				code.local(ASTORE, local(slot));
+			}
+			return null;
+		}
+		code.local(ALOAD, GLOBALS);
+		token(identifier);
+		initializer(stmt);
+		runtime("defineGlobal", "(" + ENVIRONMENT_DESCRIPTOR + TOKEN_DESCRIPTOR + OBJECT_DESCRIPTOR + ")V");
+		return null;
+	}
+
+	@Override
+	public Void visit(BlockStmt block) {
+		int size = block.getSlotCount();
+		if (size > 0) {
+			blockBases.add(slotCount);
+			slotCount += size;
+			code.useLocals(local(slotCount));
+			if (slotCount > doubleSlots.length) {
+				doubleSlots = Arrays.copyOf(doubleSlots, Math.max(slotCount, doubleSlots.length * 2));
+			}
+		}
+		// the locals need no clearing, a local is always declared before it is read
+		for (Stmt stmt : block.getStatements()) {
+			stmt.accept(this);
+		}
+		if (size > 0) {
+			slotCount = blockBases.remove(blockBases.size() - 1);
+		}
+		return null;
+	}
+
+	private void initializer(VarDeclareStmt stmt) {
+		Expr init = stmt.getInitializer();
+		if (init != null) {
+			compile(init);
+		} else {
+			code.op(ACONST_NULL, 1);
+		}
+	}
+
+	private void compile(Expr expr) {
+		expr.accept(this);
+	}
+
+	/**
+	 * @return slot of a block local among the locals of all the blocks
+	 */
+	private int slot(int depth, int slot) {
+		return blockBases.get(blockBases.size() - 1 - depth) + slot;
+	}
+
+	/**
+	 * @return JVM local variable of a slot
+	 */
+	private int local(int slot) {
+		return FIRST_LOCAL + 2 * slot;
+	}
+
+	private void constant(Object value) {
+		Integer index = indexes.get(value);
+		if (index == null) {
+			index = constants.size();
+			constants.add(value);
+			indexes.put(value, index);
+		}
+		code.local(ALOAD, CONSTANTS);
+		code.pushInt(index);
+		code.op(AALOAD, -1);
+	}
+
+	private void token(Token token) {
+		Integer index = indexes.get(token);
+		if (index == null) {
+			index = tokens.size();
+			tokens.add(token);
+			indexes.put(token, index);
+		}
+		code.local(ALOAD, TOKENS);
+		code.pushInt(index);
+		code.op(AALOAD, -1);
+	}
+
+	private void runtime(String name, String descriptor) {
+		code.invoke(INVOKESTATIC, JitRuntime.NAME, name, descriptor);
+	}
+
+	private void boxNumber() {
+		code.invoke(INVOKESTATIC, "java/lang/Double", "valueOf", "(D)Ljava/lang/Double;");
+	}
+
+	private void boxBoolean() {
+		code.invoke(INVOKESTATIC, "java/lang/Boolean", "valueOf", "(Z)Ljava/lang/Boolean;");
+	}
+}
@@ -0,0 +1,134 @@
+package learn.craftinginterpreters.lox.jit;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import learn.craftinginterpreters.lox.interpreter.Environment;
+import learn.craftinginterpreters.lox.interpreter.Interpreter;
+import learn.craftinginterpreters.lox.interpreter.Output;
+import learn.craftinginterpreters.lox.lexer.Token;
+import learn.craftinginterpreters.lox.parser.Stmt;
+
+/**
+ * Resolved top-level statements of a script run many times, interpreted until
+ * they get hot, then compiled to JVM bytecode.
+ *
+ * Each top-level statement counts its executions. Once a statement reaches
+ * {@link #COMPILE_THRESHOLD}, it is compiled with the statements following it
+ * into a hidden class, which the next runs execute instead of interpreting
+ * them. A statement which fails to compile keeps being interpreted.
+ *
+ * The hidden classes are only referenced by the script, so they get unloaded
+ * with it once it is discarded.
+ */
+public class TieredScript {
+
+	/**
+	 * Executions of a top-level statement before it gets compiled. The
+	 * bytecode only outruns the interpreter once the JVM compiled it in turn,
+	 * after thousands of executions, so only scripts run that often are worth
+	 * it.
+	 */
+	public static final int COMPILE_THRESHOLD = 1000;
+
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+	private static final MethodType CONSTRUCTOR = MethodType.methodType(void.class, Object[].class,
+			Token[].class);
+
+	/**
+	 * Statements from a top-level statement to {@link #end}, excluded, compiled
+	 * together.
+	 */
+	private static final class Tier {
+		final CompiledStatements code;
+		final int end;
+
+		Tier(CompiledStatements code, int end) {
+			this.code = code;
+			this.end = end;
+		}
+	}
+
+	// statement being compiled by a thread, interpreted by the others
+	private static final Tier COMPILING = new Tier(null, 0);
+	// statement which failed to compile
+	private static final Tier INTERPRETED = new Tier(null, 0);
+
+	private final Stmt[] statements;
+	// racy, a few executions lost between threads only delay the compilation
+	private final int[] executions;
+	private final AtomicReferenceArray<Tier> tiers;
+
+	public TieredScript(List<Stmt> statements) {
+		this.statements = statements.toArray(new Stmt[0]);
+		this.executions = new int[this.statements.length];
+		this.tiers = new AtomicReferenceArray<>(this.statements.length);
+	}
+
+	/**
+	 * Execute the statements in the globals of the interpreter. A runtime error
+	 * stops the execution, whether the statement raising it was compiled or
+	 * not.
+	 */
+	public void run(Interpreter interpreter) {
+		Environment globals = interpreter.getGlobals();
+		Output out = interpreter.getOutput();
+		int i = 0;
+		while (i < statements.length) {
+			Tier tier = tiers.get(i);
+			if (tier == null && ++executions[i] >= COMPILE_THRESHOLD) {
+				tier = compile(i);
+			}
+			if (tier != null && tier.code != null) {
+				tier.code.execute(globals, out);
+				i = tier.end;
+			} else {
+				statements[i].accept(interpreter);
+				i++;
+			}
+		}
+	}
+
+	/**
+	 * @return count of top-level statements executed as bytecode
+	 */
+	public int getCompiledCount() {
+		int count = 0;
+		for (int i = 0; i < statements.length; i++) {
+			Tier tier = tiers.get(i);
+			if (tier != null && tier.code != null) {
+				count += tier.end - i;
+			}
+		}
+		return count;
+	}
+
+	private Tier compile(int start) {
+		if (!tiers.compareAndSet(start, null, COMPILING)) {
+			return tiers.get(start);
+		}
+		Tier tier;
+		try {
+			StatementCompiler compiler = new StatementCompiler();
+			compiler.add(statements[start]);
+			int end = start + 1;
+			// the following statements are compiled along, as long as the method is small enough
+			while (end < statements.length && tiers.get(end) == null && compiler.add(statements[end])) {
+				end++;
+			}
+			MethodHandles.Lookup hidden = LOOKUP.defineHiddenClass(compiler.toByteArray(), true);
+			MethodHandle constructor = hidden.findConstructor(hidden.lookupClass(), CONSTRUCTOR);
+			tier = new Tier((CompiledStatements) constructor.invoke(compiler.getConstants(), compiler.getTokens()), end);
+		} catch (RuntimeException | LinkageError | ReflectiveOperationException e) {
+			// such as a class the JVM fails to verify
+			tier = INTERPRETED;
+		} catch (Throwable e) {
+			throw new IllegalStateException(e);
+		}
+		tiers.set(start, tier);
+		return tier;
+	}
+}
@@ -0,0 +1,134 @@
+package learn.craftinginterpreters.lox.lexer;
+
+import java.math.BigInteger;
+
+/**
+ * Conversion of the decimal w 10^q scanned by the {@link Lexer} to the closest
+ * double, without going through a string.
+ *
+ * Exact operands take Clinger's fast path: a double integer multiplied or
+ * divided by an exact power of ten is correctly rounded. The others go through
+ * the Eisel-Lemire algorithm, which gives up on the rare ambiguous cases, left
+ * to {@link Double#parseDouble(String)}.
+ */
+final class DoubleParser {
+
+	// largest integer all of whose smaller integers are exact doubles
+	private static final long MAX_EXACT_INTEGER = 1L << 53;
+
+	private static final double[] EXACT_POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+			1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	private DoubleParser() {
+	}
+
+	/**
+	 * @param w - digits of the decimal, below 10^19
+	 * @param q - power of ten of the last digit
+	 * @return the double closest to w 10^q, or NaN when it cannot be told
+	 *         without the digits
+	 */
+	static double toDouble(long w, int q) {
+		if (w == 0) {
+			return 0;
+		}
+		if (w <= MAX_EXACT_INTEGER && Math.abs(q) < EXACT_POWERS_OF_TEN.length) {
+			return q < 0 ? w / EXACT_POWERS_OF_TEN[-q] : w * EXACT_POWERS_OF_TEN[q];
+		}
+		return eiselLemire(w, q);
+	}
+
+	/**
+	 * Multiply w by a 128-bit approximation of 10^q, and round the product to
+	 * 53 bits unless the approximation is too coarse to tell how.
+	 */
+	private static double eiselLemire(long w, int q) {
+		if (q < Powers.Q_MIN || q > Powers.Q_MAX) {
+			return Double.NaN;
+		}
+		long hiPower = Powers.HI[q - Powers.Q_MIN];
+		long loPower = Powers.LO[q - Powers.Q_MIN];
+
+		int lz = Long.numberOfLeadingZeros(w);
+		long man = w << lz;
+		long exp2 = (217706L * q >> 16) + 64 + 1023 - lz;
+
+		long xHi = unsignedMultiplyHigh(man, hiPower);
+		long xLo = man * hiPower;
+		if ((xHi & 0x1FF) == 0x1FF && Long.compareUnsigned(xLo + man, man) < 0) {
+			// wider approximation
+			long yHi = unsignedMultiplyHigh(man, loPower);
+			long yLo = man * loPower;
+			long mergedHi = xHi;
+			long mergedLo = xLo + yHi;
+			if (Long.compareUnsigned(mergedLo, xLo) < 0) {
+				mergedHi++;
+			}
+			if ((mergedHi & 0x1FF) == 0x1FF && mergedLo + 1 == 0 && Long.compareUnsigned(yLo + man, man) < 0) {
+				return Double.NaN;
+			}
+			xHi = mergedHi;
+			xLo = mergedLo;
+		}
+
+		long msb = xHi >>> 63;
+		long mantissa = xHi >>> (msb + 9);
+		exp2 -= 1 ^ msb;
+		if (xLo == 0 && (xHi & 0x1FF) == 0 && (mantissa & 3) == 1) {
+			// halfway between two doubles
+			return Double.NaN;
+		}
+
+		mantissa += mantissa & 1;
+		mantissa >>>= 1;
+		if (mantissa >>> 53 > 0) {
+			mantissa >>>= 1;
+			exp2++;
+		}
+		if (exp2 <= 0 || exp2 >= 0x7FF) {
+			// subnormal
+			return Double.NaN;
+		}
+		return Double.longBitsToDouble(exp2 << 52 | mantissa & ((1L << 52) - 1));
+	}
+
+	private static long unsignedMultiplyHigh(long x, long y) {
+		return Math.multiplyHigh(x, y) + (x >> 63 & y) + (y >> 63 & x);
+	}
+
+	/**
+	 * 128-bit approximations of the powers of ten, from 10^-342 to 10^308,
+	 * normalized so that their highest bit is set. They are computed once the
+	 * first literal misses the fast path, as the fast_float library does for
+	 * powers of five.
+	 */
+	private static final class Powers {
+		static final int Q_MIN = -342;
+		static final int Q_MAX = 308;
+		static final long[] HI = new long[Q_MAX - Q_MIN + 1];
+		static final long[] LO = new long[Q_MAX - Q_MIN + 1];
+
+		static {
+			BigInteger two128 = BigInteger.ONE.shiftLeft(128);
+			BigInteger mask = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+			for (int q = Q_MIN; q <= Q_MAX; q++) {
+				BigInteger power = BigInteger.valueOf(5).pow(Math.abs(q));
+				int z = power.bitLength();
+				BigInteger c;
+				if (q >= 0) {
+					// truncated to its 128 high bits
+					c = z <= 128 ? power.shiftLeft(128 - z) : power.shiftRight(z - 128);
+				} else if (q >= -27) {
+					c = BigInteger.ONE.shiftLeft(z + 127).divide(power).add(BigInteger.ONE);
+				} else {
+					c = BigInteger.ONE.shiftLeft(2 * z + 128).divide(power).add(BigInteger.ONE);
+					while (c.compareTo(two128) >= 0) {
+						c = c.shiftRight(1);
+					}
+				}
+				HI[q - Q_MIN] = c.shiftRight(64).longValue();
+				LO[q - Q_MIN] = c.and(mask).longValue();
+			}
+		}
+	}
+}
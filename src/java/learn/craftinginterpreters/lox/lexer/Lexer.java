@@ -1,64 +1,174 @@
 package learn.craftinginterpreters.lox.lexer;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-
-import learn.craftinginterpreters.lox.Lox;
-
-public class Lexer {
-
-	private static final Map<String, Type> KEYWORDS;
-
-	static {
-		KEYWORDS = new HashMap<>();
-		KEYWORDS.put("and", Type.AND);
-		KEYWORDS.put("class", Type.CLASS);
-		KEYWORDS.put("else", Type.ELSE);
-		KEYWORDS.put("false", Type.FALSE);
-		KEYWORDS.put("for", Type.FOR);
-		KEYWORDS.put("fun", Type.FUN);
-		KEYWORDS.put("if", Type.IF);
-		KEYWORDS.put("nil", Type.NIL);
-		KEYWORDS.put("or", Type.OR);
-		KEYWORDS.put("print", Type.PRINT);
-		KEYWORDS.put("return", Type.RETURN);
-		KEYWORDS.put("super", Type.SUPER);
-		KEYWORDS.put("this", Type.THIS);
-		KEYWORDS.put("true", Type.TRUE);
-		KEYWORDS.put("var", Type.VAR);
-		KEYWORDS.put("while", Type.WHILE);
-	}
 
-	// TODO: case read a single file only: perhaps large file
-	// TODO: parse a stream of character and analyze them lively
-	// TODO: user a buffer
+import learn.craftinginterpreters.lox.ErrorReporter;
+
+/**
+ * A pull lexer handing out tokens on demand through {@link #next()}.
+ *
+ * Characters are read through a fixed-size buffer which only keeps the token
+ * being scanned, so that a large script read from a {@link Reader} is lexed in
+ * constant memory. The buffer only grows for a single token larger than it,
+ * such as a huge string literal.
+ *
+ * Tokens refer to their range of the buffer and materialize their lexeme only
+ * when asked for. A full buffer is therefore never overwritten but replaced,
+ * and stays alive as long as tokens refer to it.
+ */
+public class Lexer implements TokenSource {
+
+	private static final int BUFFER_SIZE = 8192;
+	// most digits of a number accumulated without overflow
+	private static final int MAX_DIGITS = 18;
+
 	// TODO: improve the scanning of string, numbers, identifiers
-	// TODO: improve the handling of keywords
 
-	private final String source;
-	private final List<Token> tokens;
+	// null once the whole source is in the buffer
+	private Reader reader;
+	private char[] buffer;
+	// end of the characters read in the buffer
+	private int limit;
 
 	private int start;
 	private int current;
 	private int line;
+	// token produced by the last scanNext(), type is null if none
+	private Type type;
+	private Object literal;
+	// symbol of an identifier token
+	private Symbol symbol;
+	private final SymbolTable symbols = new SymbolTable();
+	private final NumberTable numbers = new NumberTable();
+	private final ErrorReporter errors;
 
 	public Lexer(String source) {
-		this.source = source;
-		this.tokens = new ArrayList<Token>();
+		this(source, ErrorReporter.STANDARD_ERROR);
+	}
+
+	public Lexer(String source, ErrorReporter errors) {
+		this.errors = errors;
+		this.reader = null;
+		this.buffer = source.toCharArray();
+		this.limit = buffer.length;
+		this.start = 0;
+		this.current = 0;
+		this.line = 1;
+	}
+
+	/**
+	 * Lex a range of the source, such as one chunk of a large script lexed
+	 * along with the others. The range must start and end between two tokens.
+	 * 
+	 * @param from - index of the first char of the range
+	 * @param to   - index following the last char of the range
+	 * @param line - line the range starts at
+	 */
+	public Lexer(char[] source, int from, int to, int line, ErrorReporter errors) {
+		this.errors = errors;
+		this.reader = null;
+		this.buffer = source;
+		this.limit = to;
+		this.start = from;
+		this.current = from;
+		this.line = line;
+	}
+
+	public Lexer(Reader reader) {
+		this(reader, ErrorReporter.STANDARD_ERROR);
+	}
+
+	public Lexer(Reader reader, ErrorReporter errors) {
+		this.errors = errors;
+		this.reader = reader;
+		this.buffer = new char[BUFFER_SIZE];
+		this.limit = 0;
 		this.start = 0;
 		this.current = 0;
 		this.line = 1;
 	}
 
+	/**
+	 * Lex a channel, such as a file channel, decoding it with the charset.
+	 * Malformed input is replaced as {@link String#String(byte[], Charset)}
+	 * does.
+	 */
+	public Lexer(ReadableByteChannel channel, Charset charset) {
+		this(channel, charset, ErrorReporter.STANDARD_ERROR);
+	}
+
+	public Lexer(ReadableByteChannel channel, Charset charset, ErrorReporter errors) {
+		this(Channels.newReader(channel, charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE), -1), errors);
+	}
+
+	/**
+	 * Scan the whole source at once.
+	 * 
+	 * @return all the tokens, ending with {@link Type#EOF}
+	 */
 	public List<Token> scan() {
-		while (!eof()) {
+		List<Token> tokens = new ArrayList<>();
+		Token t;
+		do {
+			t = next();
+			tokens.add(t);
+		} while (!t.match(Type.EOF));
+		return tokens;
+	}
+
+	/**
+	 * Scan the next token. Once the source is exhausted, every call returns a
+	 * {@link Type#EOF} token.
+	 * 
+	 * @throws UncheckedIOException when reading the source fails
+	 */
+	@Override
+	public Token next() {
+		if (!scanToken()) {
+			return new Token(Type.EOF, "", null, line);
+		}
+		if (symbol != null) {
+			return new Token(symbol, line);
+		}
+		return new Token(type, buffer, start, current - start, literal, line);
+	}
+
+	/**
+	 * Scan the rest of the source into a token buffer, without creating any
+	 * {@link Token} object.
+	 * 
+	 * @return the buffer, ending with {@link Type#EOF}
+	 */
+	public TokenBuffer scanBuffer() {
+		TokenBuffer tokens = new TokenBuffer();
+		while (scanToken()) {
+			tokens.add(type, buffer, start, current - start, literal, line);
+		}
+		tokens.add(Type.EOF, buffer, 0, 0, null, line);
+		return tokens;
+	}
+
+	/**
+	 * @return false when the source is exhausted
+	 */
+	private boolean scanToken() {
+		type = null;
+		literal = null;
+		symbol = null;
+		while (type == null && !eof()) {
 			start = current;
 			scanNext();
 		}
-		tokens.add(new Token(Type.EOF, "", null, line));
-		return tokens;
+		return type != null;
 	}
 
 	private void scanNext() {
@@ -119,7 +229,7 @@ public class Lexer {
 				while (peek() != '\n' && !eof()) {
 					advance();
 				}
-				addToken(Type.COMMENT, source.substring(start + 2, current));
+				addToken(Type.COMMENT, lexeme(start + 2, current));
 			} else if (match('*')) {
 				blockComment();
 			} else {
@@ -148,26 +258,62 @@ public class Lexer {
 			} else if (isAlpha(c)) {
 				identifier();
 			} else {
-				Lox.error(line, "Unexpected character: " + c);
+				errors.error(line, "Unexpected character: " + c);
 			}
 		}
 	}
 
+	/**
+	 * Scan a number, accumulating its first significant digits as they are
+	 * read. Only a number which cannot be rounded from them is read back from
+	 * its lexeme.
+	 */
 	private void number() {
+		// first digits, how many of them from the first non-zero one, and
+		// whether a non-zero digit was dropped after them
+		long digits = buffer[start] - '0';
+		int significant = digits != 0 ? 1 : 0;
+		int exponent = 0;
+		boolean truncated = false;
 		while (isDigit(peek())) {
-			advance();
+			int digit = advance() - '0';
+			if (significant < MAX_DIGITS) {
+				if (significant > 0 || digit != 0) {
+					significant++;
+				}
+				digits = digits * 10 + digit;
+			} else {
+				exponent++;
+				truncated |= digit != 0;
+			}
 		}
 
 		if (peek() == '.' && isDigit(peekNext())) {
 			advance();
 
 			while (isDigit(peek())) {
-				advance();
+				int digit = advance() - '0';
+				if (significant < MAX_DIGITS) {
+					if (significant > 0 || digit != 0) {
+						significant++;
+					}
+					digits = digits * 10 + digit;
+					exponent--;
+				} else {
+					truncated |= digit != 0;
+				}
 			}
 		}
 
-		Double d = Double.parseDouble(source.substring(start, current));
-		addToken(Type.NUMBER, d);
+		double value = DoubleParser.toDouble(digits, exponent);
+		if (truncated && value != DoubleParser.toDouble(digits + 1, exponent)) {
+			// the dropped digits decide the rounding
+			value = Double.NaN;
+		}
+		if (Double.isNaN(value)) {
+			value = Double.parseDouble(lexeme(start, current));
+		}
+		addToken(Type.NUMBER, numbers.intern(value));
 	}
 
 	private void blockComment() {
@@ -186,7 +332,7 @@ public class Lexer {
 					}
 				}
 				if (!endOfString) {
-					Lox.error(line, "Unterminated string in block comment.");
+					errors.error(line, "Unterminated string in block comment.");
 				}
 				break;
 			}
@@ -195,12 +341,12 @@ public class Lexer {
 				break;
 			case '*':
 				if (match('/')) {
-					addToken(Type.COMMENT, source.substring(start + 2, current - 2));
+					addToken(Type.COMMENT, lexeme(start + 2, current - 2));
 					return;
 				}
 			}
 		}
-		Lox.error(line, "Unterminated block comment.");
+		errors.error(line, "Unterminated block comment.");
 	}
 
 	private void string() {
@@ -212,12 +358,13 @@ public class Lexer {
 		}
 
 		if (eof()) {
-			Lox.error(line, "Error unterminated string.");
+			errors.error(line, "Error unterminated string.");
+			return;
 		}
 
 		advance();
 
-		String str = source.substring(start + 1, current - 1);
+		String str = lexeme(start + 1, current - 1);
 		addToken(Type.STRING, str);
 	}
 
@@ -226,14 +373,78 @@ public class Lexer {
 			advance();
 		}
 
-		String value = source.substring(start, current);
-		if (KEYWORDS.containsKey(value)) {
-			// TODO: here perform substring twice
-			addToken(KEYWORDS.get(value));
-		} else {
-			// TODO: here perform substring twice
-			addToken(Type.IDENTIFIER);
+		Type word = keyword();
+		addToken(word);
+		if (word == Type.IDENTIFIER) {
+			symbol = symbols.intern(buffer, start, current - start);
+		}
+	}
+
+	/**
+	 * Recognize keywords by switching on their first letters.
+	 * 
+	 * @return the keyword type of the current word, or {@link Type#IDENTIFIER}
+	 */
+	private Type keyword() {
+		switch (buffer[start]) {
+		case 'a':
+			return keyword(1, "nd", Type.AND);
+		case 'c':
+			return keyword(1, "lass", Type.CLASS);
+		case 'e':
+			return keyword(1, "lse", Type.ELSE);
+		case 'f':
+			if (current - start > 1) {
+				switch (buffer[start + 1]) {
+				case 'a':
+					return keyword(2, "lse", Type.FALSE);
+				case 'o':
+					return keyword(2, "r", Type.FOR);
+				case 'u':
+					return keyword(2, "n", Type.FUN);
+				}
+			}
+			break;
+		case 'i':
+			return keyword(1, "f", Type.IF);
+		case 'n':
+			return keyword(1, "il", Type.NIL);
+		case 'o':
+			return keyword(1, "r", Type.OR);
+		case 'p':
+			return keyword(1, "rint", Type.PRINT);
+		case 'r':
+			return keyword(1, "eturn", Type.RETURN);
+		case 's':
+			return keyword(1, "uper", Type.SUPER);
+		case 't':
+			if (current - start > 1) {
+				switch (buffer[start + 1]) {
+				case 'h':
+					return keyword(2, "is", Type.THIS);
+				case 'r':
+					return keyword(2, "ue", Type.TRUE);
+				}
+			}
+			break;
+		case 'v':
+			return keyword(1, "ar", Type.VAR);
+		case 'w':
+			return keyword(1, "hile", Type.WHILE);
 		}
+		return Type.IDENTIFIER;
+	}
+
+	private Type keyword(int offset, String rest, Type type) {
+		if (current - start != offset + rest.length()) {
+			return Type.IDENTIFIER;
+		}
+		for (int i = 0; i < rest.length(); i++) {
+			if (buffer[start + offset + i] != rest.charAt(i)) {
+				return Type.IDENTIFIER;
+			}
+		}
+		return type;
 	}
 
 	private boolean isDigit(char c) {
@@ -241,15 +452,18 @@ public class Lexer {
 	}
 
 	private char advance() {
+		if (current >= limit) {
+			fill();
+		}
 		current++;
-		return source.charAt(current - 1);
+		return buffer[current - 1];
 	}
 
 	private boolean match(char expected) {
 		if (eof()) {
 			return false;
 		}
-		if (source.charAt(current) != expected) {
+		if (buffer[current] != expected) {
 			return false;
 		}
 
@@ -269,18 +483,54 @@ public class Lexer {
 		if (eof()) {
 			return '\0';
 		}
-		return source.charAt(current);
+		return buffer[current];
 	}
 
 	private char peekNext() {
-		if (current > source.length() + 2) {
+		if (current + 1 >= limit && !fill()) {
 			return '\0';
 		}
-		return source.charAt(current + 1);
+		return buffer[current + 1];
 	}
 
 	private boolean eof() {
-		return current >= source.length();
+		return current >= limit && !fill();
+	}
+
+	/**
+	 * Read more characters. Once the buffer is full, continue in a new one
+	 * starting with the current token.
+	 * 
+	 * @return false at the end of the source
+	 */
+	private boolean fill() {
+		if (reader == null) {
+			return false;
+		}
+		if (limit == buffer.length) {
+			int pending = limit - start;
+			char[] next = new char[Math.max(BUFFER_SIZE, pending * 2)];
+			System.arraycopy(buffer, start, next, 0, pending);
+			buffer = next;
+			limit = pending;
+			current -= start;
+			start = 0;
+		}
+		try {
+			int read = reader.read(buffer, limit, buffer.length - limit);
+			if (read < 0) {
+				reader = null;
+				return false;
+			}
+			limit += read;
+			return true;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private String lexeme(int from, int to) {
+		return new String(buffer, from, to - from);
 	}
 
 	private void addToken(Type type) {
@@ -288,7 +538,7 @@ public class Lexer {
 	}
 
 	private void addToken(Type type, Object literal) {
-		Token token = new Token(type, source.substring(start, current), literal, line);
-		tokens.add(token);
+		this.type = type;
+		this.literal = literal;
 	}
 }
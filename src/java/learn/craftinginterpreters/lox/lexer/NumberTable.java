@@ -0,0 +1,63 @@
+package learn.craftinginterpreters.lox.lexer;
+
+/**
+ * Constant pool of the number literals met by a lexer, so that a value
+ * written many times is boxed once and shared by all its tokens.
+ */
+class NumberTable {
+
+	private double[] values;
+	private Double[] entries;
+	private int size;
+
+	NumberTable() {
+		values = new double[64];
+		entries = new Double[64];
+		size = 0;
+	}
+
+	Double intern(double value) {
+		long bits = Double.doubleToRawLongBits(value);
+		int mask = entries.length - 1;
+		int index = hash(bits) & mask;
+		Double entry;
+		while ((entry = entries[index]) != null) {
+			if (Double.doubleToRawLongBits(values[index]) == bits) {
+				return entry;
+			}
+			index = (index + 1) & mask;
+		}
+
+		entry = value;
+		values[index] = value;
+		entries[index] = entry;
+		if (++size * 2 > entries.length) {
+			grow();
+		}
+		return entry;
+	}
+
+	private void grow() {
+		double[] oldValues = values;
+		Double[] oldEntries = entries;
+		values = new double[oldValues.length * 2];
+		entries = new Double[oldEntries.length * 2];
+		int mask = entries.length - 1;
+		for (int i = 0; i < oldEntries.length; i++) {
+			if (oldEntries[i] != null) {
+				int index = hash(Double.doubleToRawLongBits(oldValues[i])) & mask;
+				while (entries[index] != null) {
+					index = (index + 1) & mask;
+				}
+				values[index] = oldValues[i];
+				entries[index] = oldEntries[i];
+			}
+		}
+	}
+
+	private static int hash(long bits) {
+		// the low bits of integers are all zero
+		long mixed = bits * 0x9E3779B97F4A7C15L;
+		return (int) (mixed >>> 32);
+	}
+}
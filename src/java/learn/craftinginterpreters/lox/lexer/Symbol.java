@@ -0,0 +1,78 @@
+package learn.craftinginterpreters.lox.lexer;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Interned identifier. There is a single symbol per name, so that symbols are
+ * compared by identity and hashed with a precomputed hash.
+ *
+ * Symbols are interned weakly: a name no script, token or environment refers
+ * to anymore drops out of the table, and gets a fresh symbol if met again.
+ */
+public final class Symbol {
+
+	private static final ConcurrentMap<String, SymbolReference> SYMBOLS = new ConcurrentHashMap<>();
+	private static final ReferenceQueue<Symbol> COLLECTED = new ReferenceQueue<>();
+
+	private static final class SymbolReference extends WeakReference<Symbol> {
+		final String name;
+
+		SymbolReference(Symbol symbol) {
+			super(symbol, COLLECTED);
+			this.name = symbol.name;
+		}
+	}
+
+	private final String name;
+	private final int hash;
+
+	private Symbol(String name) {
+		this.name = name;
+		this.hash = name.hashCode();
+	}
+
+	/**
+	 * @return the unique symbol of the name
+	 */
+	public static Symbol intern(String name) {
+		expunge();
+		while (true) {
+			SymbolReference reference = SYMBOLS.get(name);
+			Symbol symbol = reference == null ? null : reference.get();
+			if (symbol != null) {
+				return symbol;
+			}
+			symbol = new Symbol(name);
+			SymbolReference created = new SymbolReference(symbol);
+			// another thread may have interned the name meanwhile
+			if (reference == null ? SYMBOLS.putIfAbsent(name, created) == null
+					: SYMBOLS.replace(name, reference, created)) {
+				return symbol;
+			}
+		}
+	}
+
+	private static void expunge() {
+		SymbolReference reference;
+		while ((reference = (SymbolReference) COLLECTED.poll()) != null) {
+			SYMBOLS.remove(reference.name, reference);
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
@@ -0,0 +1,68 @@
+package learn.craftinginterpreters.lox.lexer;
+
+/**
+ * Cache of the symbols met by a lexer, looked up by character range so that an
+ * identifier seen before does not allocate. Misses go to {@link Symbol#intern}.
+ */
+class SymbolTable {
+
+	private Symbol[] entries;
+	private int size;
+
+	SymbolTable() {
+		entries = new Symbol[64];
+		size = 0;
+	}
+
+	Symbol intern(char[] chars, int start, int length) {
+		// same hash as String.hashCode
+		int hash = 0;
+		for (int i = start; i < start + length; i++) {
+			hash = 31 * hash + chars[i];
+		}
+
+		int mask = entries.length - 1;
+		int index = hash & mask;
+		Symbol symbol;
+		while ((symbol = entries[index]) != null) {
+			if (symbol.hashCode() == hash && matches(symbol.getName(), chars, start, length)) {
+				return symbol;
+			}
+			index = (index + 1) & mask;
+		}
+
+		symbol = Symbol.intern(new String(chars, start, length));
+		entries[index] = symbol;
+		if (++size * 2 > entries.length) {
+			grow();
+		}
+		return symbol;
+	}
+
+	private void grow() {
+		Symbol[] old = entries;
+		entries = new Symbol[old.length * 2];
+		int mask = entries.length - 1;
+		for (Symbol symbol : old) {
+			if (symbol != null) {
+				int index = symbol.hashCode() & mask;
+				while (entries[index] != null) {
+					index = (index + 1) & mask;
+				}
+				entries[index] = symbol;
+			}
+		}
+	}
+
+	private static boolean matches(String name, char[] chars, int start, int length) {
+		if (name.length() != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (name.charAt(i) != chars[start + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -3,13 +3,42 @@ package learn.craftinginterpreters.lox.lexer;
 public class Token {
 
 	private final Type type;
-	private final String lexem;
+	// materialized on demand from the characters
+	private String lexem;
+	private char[] chars;
+	private final int start;
+	private final int length;
 	private final Object literal;
 	private final int line;
+	// interned lexeme, set for identifiers
+	private Symbol symbol;
 
 	public Token(Type type, String lexem, Object literal, int line) {
 		this.type = type;
 		this.lexem = lexem;
+		this.start = 0;
+		this.length = lexem.length();
+		this.literal = literal;
+		this.line = line;
+	}
+
+	/**
+	 * Identifier token, its lexeme is the name of the symbol.
+	 */
+	public Token(Symbol symbol, int line) {
+		this(Type.IDENTIFIER, symbol.getName(), null, line);
+		this.symbol = symbol;
+	}
+
+	/**
+	 * Token whose lexeme is the range of characters, only turned into a string
+	 * when asked for. The characters must not be modified afterwards.
+	 */
+	public Token(Type type, char[] chars, int start, int length, Object literal, int line) {
+		this.type = type;
+		this.chars = chars;
+		this.start = start;
+		this.length = length;
 		this.literal = literal;
 		this.line = line;
 	}
@@ -26,7 +55,7 @@ public class Token {
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
 		sb.append("Token: ").append(type).append(" at line ").append(line).append("\n");
-		sb.append("Lexem: ").append(lexem).append("\n");
+		sb.append("Lexem: ").append(getLexem()).append("\n");
 		sb.append("Literal: ").append(literal).append("\n");
 		return sb.toString();
 	}
@@ -36,9 +65,28 @@ public class Token {
 	}
 
 	public String getLexem() {
+		if (this.lexem == null) {
+			this.lexem = new String(chars, start, length);
+			// release the source characters
+			this.chars = null;
+		}
 		return this.lexem;
 	}
 
+	/**
+	 * @return the interned lexeme, used to look identifiers up by identity
+	 */
+	public Symbol getSymbol() {
+		if (this.symbol == null) {
+			this.symbol = Symbol.intern(getLexem());
+		}
+		return this.symbol;
+	}
+
+	public int getLength() {
+		return this.length;
+	}
+
 	public Object getLiteral() {
 		return this.literal;
 	}
@@ -0,0 +1,107 @@
+package learn.craftinginterpreters.lox.lexer;
+
+import java.util.Arrays;
+
+/**
+ * Tokens stored as a structure of arrays: the type, line and lexeme range of
+ * each token live in primitive arrays and the lexemes share a single character
+ * array. Filling it does not allocate per token, and {@link Token} objects are
+ * only created when read.
+ */
+public class TokenBuffer {
+
+	private static final Type[] TYPES = Type.values();
+
+	private byte[] types;
+	private int[] starts;
+	private int[] lengths;
+	private int[] lines;
+	// literal of each token, only set for literal tokens
+	private Object[] literals;
+	private int size;
+
+	private char[] text;
+	private int textLength;
+
+	public TokenBuffer() {
+		types = new byte[256];
+		starts = new int[256];
+		lengths = new int[256];
+		lines = new int[256];
+		literals = new Object[256];
+		text = new char[4096];
+	}
+
+	void add(Type type, char[] chars, int start, int length, Object literal, int line) {
+		if (size == types.length) {
+			int capacity = size * 2;
+			types = Arrays.copyOf(types, capacity);
+			starts = Arrays.copyOf(starts, capacity);
+			lengths = Arrays.copyOf(lengths, capacity);
+			lines = Arrays.copyOf(lines, capacity);
+			literals = Arrays.copyOf(literals, capacity);
+		}
+		if (textLength + length > text.length) {
+			text = Arrays.copyOf(text, Math.max(text.length * 2, textLength + length));
+		}
+		System.arraycopy(chars, start, text, textLength, length);
+
+		types[size] = (byte) type.ordinal();
+		starts[size] = textLength;
+		lengths[size] = length;
+		lines[size] = line;
+		literals[size] = literal;
+		textLength += length;
+		size++;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public Type getType(int index) {
+		return TYPES[types[index]];
+	}
+
+	public int getLine(int index) {
+		return lines[index];
+	}
+
+	public int getLength(int index) {
+		return lengths[index];
+	}
+
+	public Object getLiteral(int index) {
+		return literals[index];
+	}
+
+	public String getLexem(int index) {
+		return new String(text, starts[index], lengths[index]);
+	}
+
+	/**
+	 * @return the token at the index, its lexeme is materialized lazily
+	 */
+	public Token get(int index) {
+		return new Token(getType(index), text, starts[index], lengths[index], literals[index], lines[index]);
+	}
+
+	/**
+	 * @return source reading the tokens in order, repeating the last one past
+	 *         the end
+	 */
+	public TokenSource source() {
+		return new TokenSource() {
+			private int next = 0;
+
+			@Override
+			public Token next() {
+				Token token = get(next);
+				if (next < size - 1) {
+					next++;
+				}
+				return token;
+			}
+		};
+	}
+}
@@ -0,0 +1,12 @@
+package learn.craftinginterpreters.lox.lexer;
+
+/**
+ * Supplier of tokens pulled one at a time by the parser.
+ */
+public interface TokenSource {
+
+	/**
+	 * @return the next token, {@link Type#EOF} once the source is exhausted
+	 */
+	public Token next();
+}
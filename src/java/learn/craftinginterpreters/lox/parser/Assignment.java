@@ -5,6 +5,8 @@ import learn.craftinginterpreters.lox.lexer.Token;
 public class Assignment implements Expr {
 	final Token identifier;
 	final Expr value;
+	int depth = -1;
+	int slot = -1;
 
 	public Assignment(Token identifier, Expr value) {
 		this.identifier = identifier;
@@ -23,4 +25,26 @@ public class Assignment implements Expr {
 	public Expr getValue() {
 		return this.value;
 	}
+
+	/**
+	 * Bind the assigned variable to a local slot.
+	 * 
+	 * @param depth - number of enclosing scopes to walk up
+	 * @param slot  - index of the variable in that scope
+	 */
+	public void resolve(int depth, int slot) {
+		this.depth = depth;
+		this.slot = slot;
+	}
+
+	/**
+	 * @return scope distance of the binding, or -1 for a global variable
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	public int getSlot() {
+		return slot;
+	}
 }
@@ -1,16 +1,29 @@
 package learn.craftinginterpreters.lox.parser;
 
 import learn.craftinginterpreters.lox.lexer.Token;
+import learn.craftinginterpreters.lox.lexer.Type;
 
 public class Binary implements Expr {
+
 	final Expr left;
 	final Token operator;
 	final Expr right;
+	final boolean numeric;
+	/**
+	 * Behavior of the node, opaque to the parser, rewritten at runtime by the
+	 * interpreter into a version specialized on the operand types seen so far.
+	 */
+	Object operation;
 
 	public Binary(Expr left, Token operator, Expr right) {
 		this.left = left;
 		this.operator = operator;
 		this.right = right;
+		if (operator.match(Type.PLUS)) {
+			numeric = left != null && left.isNumeric() && right != null && right.isNumeric();
+		} else {
+			numeric = operator.match(Type.MINUS, Type.STAR, Type.SLASH);
+		}
 	}
 
 	@Override
@@ -18,6 +31,11 @@ public class Binary implements Expr {
 		return visitor.visit(this);
 	}
 
+	@Override
+	public boolean isNumeric() {
+		return numeric;
+	}
+
 	public Expr getLeft() {
 		return left;
 	}
@@ -29,4 +47,17 @@ public class Binary implements Expr {
 	public Expr getRight() {
 		return right;
 	}
+
+	public Object getOperation() {
+		return operation;
+	}
+
+	/**
+	 * Replace the operation of the node, with a plain write racing those of the
+	 * other threads running the same script, so the operation must be
+	 * immutable.
+	 */
+	public void specialize(Object operation) {
+		this.operation = operation;
+	}
 }
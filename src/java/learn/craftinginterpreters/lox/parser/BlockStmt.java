@@ -10,6 +10,7 @@ public class BlockStmt implements Stmt {
 	final Token opening;
 	final Token closing;
 	final List<Stmt> stmts;
+	int slotCount;
 
 	public BlockStmt(Token opening, Token closing, List<Stmt> stmts) {
 		this.opening = opening;
@@ -23,7 +24,27 @@ public class BlockStmt implements Stmt {
 		return visitor.visit(this);
 	}
 	
+	public Token getOpening() {
+		return this.opening;
+	}
+
+	public Token getClosing() {
+		return this.closing;
+	}
+
 	public Iterable<Stmt> getStatements() {
 		return this.stmts;
 	}
+
+	public void setSlotCount(int slotCount) {
+		this.slotCount = slotCount;
+	}
+
+	/**
+	 * @return number of variables declared directly in this block, 0 when the
+	 *         block opens no scope
+	 */
+	public int getSlotCount() {
+		return this.slotCount;
+	}
 }
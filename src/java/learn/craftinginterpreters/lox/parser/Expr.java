@@ -3,6 +3,14 @@ package learn.craftinginterpreters.lox.parser;
 public interface Expr {
 	
 	public <R> R accept(Visitor<R> visitor);
+
+	/**
+	 * @return true when the expression either yields a number or fails, so that
+	 *         it can be evaluated on primitive doubles
+	 */
+	public default boolean isNumeric() {
+		return false;
+	}
 	
 	public static interface Visitor<R> {
 		public R visit(Binary expr);
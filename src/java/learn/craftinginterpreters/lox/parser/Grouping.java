@@ -11,6 +11,11 @@ public class Grouping implements Expr {
 		return visitor.visit(this);
 	}
 
+	@Override
+	public boolean isNumeric() {
+		return expression != null && expression.isNumeric();
+	}
+
 	public Expr getExpr() {
 		return this.expression;
 	}
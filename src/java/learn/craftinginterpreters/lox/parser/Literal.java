@@ -11,6 +11,11 @@ public class Literal implements Expr {
 		return visitor.visit(this);
 	}
 
+	@Override
+	public boolean isNumeric() {
+		return value instanceof Double;
+	}
+
 	public Object getValue() {
 		return this.value;
 	}
@@ -0,0 +1,245 @@
+package learn.craftinginterpreters.lox.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import learn.craftinginterpreters.lox.ErrorReporter;
+import learn.craftinginterpreters.lox.lexer.Lexer;
+
+/**
+ * Front end of large scripts running on a {@link ForkJoinPool}. The source is
+ * split into chunks at top-level statement boundaries, every chunk is lexed and
+ * parsed by its own task, and the statements are joined back in source order.
+ * Each chunk is lexed from the line it starts at, so tokens carry the lines of
+ * the whole source.
+ *
+ * A boundary follows a semicolon or a closing brace at brace depth zero,
+ * outside of strings and comments. Error recovery may differ at the edge of a
+ * chunk though, so a source with syntax errors is parsed again sequentially to
+ * report the errors as the {@link Parser} alone does.
+ */
+public class ParallelParser {
+
+	// smallest chunk worth a task, in chars
+	public static final int MIN_CHUNK = 1 << 16;
+
+	private final ForkJoinPool pool;
+	private final int minChunk;
+
+	public ParallelParser() {
+		this(ForkJoinPool.commonPool(), MIN_CHUNK);
+	}
+
+	/**
+	 * @param pool     - pool running the tasks
+	 * @param minChunk - smallest chunk lexed and parsed by a task, in chars
+	 */
+	public ParallelParser(ForkJoinPool pool, int minChunk) {
+		if (minChunk <= 0) {
+			throw new IllegalArgumentException("Chunk size must be positive: " + minChunk);
+		}
+		this.pool = pool;
+		this.minChunk = minChunk;
+	}
+
+	public List<Stmt> parse(String source, ErrorReporter errors) {
+		List<Stmt> statements = new ArrayList<>();
+		statements(source, errors).forEachRemaining(statements::add);
+		return statements;
+	}
+
+	/**
+	 * @return iterator over the top-level statements as
+	 *         {@link Parser#statements()}, parsed ahead of time unless the source
+	 *         has syntax errors
+	 */
+	public Iterator<Stmt> statements(String source, ErrorReporter errors) {
+		char[] chars = source.toCharArray();
+		int chunk = Math.max(minChunk, chars.length / (pool.getParallelism() * 4));
+		if (chars.length >= 2 * chunk) {
+			Chunks chunks = split(chars, chunk);
+			if (chunks.count > 1) {
+				List<Stmt> statements = parse(chars, chunks);
+				if (statements != null) {
+					return statements.iterator();
+				}
+			}
+		}
+		return new Parser(new Lexer(chars, 0, chars.length, 1, errors), errors).statements();
+	}
+
+	/**
+	 * @return the statements of all the chunks, or null when a chunk has a
+	 *         syntax error
+	 */
+	private List<Stmt> parse(char[] chars, Chunks chunks) {
+		AtomicBoolean failed = new AtomicBoolean(false);
+		// each task sets the statements of its chunk, the join publishing them
+		List<List<Stmt>> parsed = new ArrayList<>(Collections.nCopies(chunks.count, null));
+		pool.invoke(new ChunkTask(chars, chunks, 0, chunks.count, parsed, failed));
+		if (failed.get()) {
+			return null;
+		}
+
+		int size = 0;
+		for (List<Stmt> statements : parsed) {
+			size += statements.size();
+		}
+		List<Stmt> statements = new ArrayList<>(size);
+		for (List<Stmt> chunk : parsed) {
+			statements.addAll(chunk);
+		}
+		return statements;
+	}
+
+	/**
+	 * Find the chunk boundaries, each at the first statement boundary at least
+	 * size chars after the previous one, skipping strings and comments as the
+	 * {@link Lexer} does.
+	 */
+	static Chunks split(char[] chars, int size) {
+		Chunks chunks = new Chunks(chars.length / size + 1);
+		int length = chars.length;
+		int depth = 0;
+		int line = 1;
+		int next = size;
+		int i = 0;
+		while (i < length) {
+			boolean boundary = false;
+			char c = chars[i++];
+			switch (c) {
+			case '\n':
+				line++;
+				break;
+			case '"':
+				while (i < length && chars[i] != '"') {
+					if (chars[i++] == '\n') {
+						line++;
+					}
+				}
+				i++;
+				break;
+			case '/':
+				if (i < length && chars[i] == '/') {
+					while (i < length && chars[i] != '\n') {
+						i++;
+					}
+				} else if (i < length && chars[i] == '*') {
+					i++;
+					while (i < length) {
+						char d = chars[i++];
+						if (d == '\n') {
+							line++;
+						} else if (d == '"') {
+							// strings inside block comments hide their end too
+							while (i < length && chars[i] != '"') {
+								if (chars[i++] == '\n') {
+									line++;
+								}
+							}
+							i++;
+						} else if (d == '*' && i < length && chars[i] == '/') {
+							i++;
+							break;
+						}
+					}
+				}
+				break;
+			case '{':
+				depth++;
+				break;
+			case '}':
+				// unbalanced braces are syntax errors, left to the sequential parse
+				boundary = --depth == 0;
+				break;
+			case ';':
+				boundary = depth == 0;
+				break;
+			}
+			if (boundary && i >= next && i < length) {
+				chunks.add(i, line);
+				next = i + size;
+			}
+		}
+		chunks.end(length);
+		return chunks;
+	}
+
+	/**
+	 * Chunks of a source: chunk i spans from starts[i] to starts[i + 1] and
+	 * starts at lines[i].
+	 */
+	static final class Chunks {
+		int[] starts;
+		int[] lines;
+		int count;
+
+		Chunks(int capacity) {
+			starts = new int[capacity + 1];
+			lines = new int[capacity + 1];
+			starts[0] = 0;
+			lines[0] = 1;
+			count = 1;
+		}
+
+		void add(int start, int line) {
+			if (count + 1 == starts.length) {
+				starts = Arrays.copyOf(starts, starts.length * 2);
+				lines = Arrays.copyOf(lines, lines.length * 2);
+			}
+			starts[count] = start;
+			lines[count++] = line;
+		}
+
+		void end(int length) {
+			starts[count] = length;
+		}
+	}
+
+	/**
+	 * Parse a range of chunks, halving the range until a single chunk is left.
+	 */
+	@SuppressWarnings("serial")
+	private static final class ChunkTask extends RecursiveAction {
+		private final char[] chars;
+		private final Chunks chunks;
+		private final int from;
+		private final int to;
+		private final List<List<Stmt>> parsed;
+		private final AtomicBoolean failed;
+
+		ChunkTask(char[] chars, Chunks chunks, int from, int to, List<List<Stmt>> parsed, AtomicBoolean failed) {
+			this.chars = chars;
+			this.chunks = chunks;
+			this.from = from;
+			this.to = to;
+			this.parsed = parsed;
+			this.failed = failed;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new ChunkTask(chars, chunks, from, middle, parsed, failed),
+						new ChunkTask(chars, chunks, middle, to, parsed, failed));
+				return;
+			}
+			if (failed.get()) {
+				// another chunk has an error, the source gets parsed again anyway
+				return;
+			}
+			ErrorReporter errors = (line, message) -> failed.set(true);
+			Lexer lexer = new Lexer(chars, chunks.starts[from], chunks.starts[from + 1], chunks.lines[from], errors);
+			List<Stmt> statements = new ArrayList<>();
+			new Parser(lexer, errors).statements().forEachRemaining(statements::add);
+			parsed.set(from, statements);
+		}
+	}
+}
@@ -1,64 +1,136 @@
 package learn.craftinginterpreters.lox.parser;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
-import learn.craftinginterpreters.lox.Lox;
+import learn.craftinginterpreters.lox.ErrorReporter;
 import learn.craftinginterpreters.lox.lexer.Token;
+import learn.craftinginterpreters.lox.lexer.TokenSource;
 import learn.craftinginterpreters.lox.lexer.Type;
 
 /**
  * A top-down recursive descent parser
  * 
+ * Tokens are pulled from the source one at a time, with a single token of
+ * lookahead, so that statements can be handed out as soon as they are parsed.
+ * 
  * @author tritamhoang
  */
 public class Parser {
 
-	List<Stmt> statements;
-
+	/**
+	 * Signal unwinding the parser to the statement to recover at, thrown once
+	 * the error is reported. It carries nothing, so it has no stack trace and a
+	 * single instance is thrown by every parser.
+	 */
 	@SuppressWarnings("serial")
 	public static class ParserError extends RuntimeException {
+		public ParserError() {
+			super(null, null, false, false);
+		}
 	}
 
+	private static final ParserError ERROR = new ParserError();
+
 	// TODO: switch the implementation to LR(1)
 	// TODO: implement bottom up parsing
 
-	private final List<Token> tokens;
-	private int current;
+	private final TokenSource tokens;
+	private final ErrorReporter errors;
+	private Token previous;
+	private Token current;
+
+	public Parser(TokenSource tokens) {
+		this(tokens, ErrorReporter.STANDARD_ERROR);
+	}
+
+	public Parser(TokenSource tokens, ErrorReporter errors) {
+		this.tokens = tokens;
+		this.errors = errors;
+		this.previous = null;
+		this.current = tokens.next();
+	}
 
 	public Parser(List<Token> tokens) {
-		this.tokens = new ArrayList<Token>();
-		this.tokens.addAll(tokens);
-		this.current = 0;
-		statements = new ArrayList<>();
+		this(tokens, ErrorReporter.STANDARD_ERROR);
+	}
+
+	public Parser(List<Token> tokens, ErrorReporter errors) {
+		this(new TokenSource() {
+			private final Iterator<Token> iterator = tokens.iterator();
+			private Token last;
+
+			@Override
+			public Token next() {
+				if (iterator.hasNext()) {
+					last = iterator.next();
+				}
+				return last;
+			}
+		}, errors);
 	}
 
 	public List<Stmt> parse() {
-		while (!eof()) {
-			Stmt s = statement();
-			if (s != null) {
-				statements.add(blockStatement());
+		List<Stmt> statements = new ArrayList<>();
+		statements().forEachRemaining(statements::add);
+		return statements;
+	}
+
+	/**
+	 * Parse the top-level statements lazily. Statements with syntax errors are
+	 * reported and skipped.
+	 * 
+	 * @return iterator parsing one more statement on each step
+	 */
+	public Iterator<Stmt> statements() {
+		return new Iterator<Stmt>() {
+			private Stmt next;
+
+			@Override
+			public boolean hasNext() {
+				while (next == null && !eof()) {
+					next = declaration();
+				}
+				return next != null;
 			}
+
+			@Override
+			public Stmt next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				Stmt stmt = next;
+				next = null;
+				return stmt;
+			}
+		};
+	}
+
+	protected Stmt declaration() {
+		try {
+			return blockStatement();
+		} catch (ParserError e) {
+			synchronize();
+			return null;
 		}
-		return statements;
 	}
 	
 	protected Stmt blockStatement() {
 		if (match(Type.LEFT_BRACE)) {
 			Token opening = previous();
-			List<Stmt> stmts = new LinkedList<>();
-			while (!eof() && match(Type.RIGHT_BRACE)) {
-				Stmt s = statement();
+			List<Stmt> stmts = new ArrayList<>();
+			while (!eof() && !peek().match(Type.RIGHT_BRACE)) {
+				Stmt s = blockStatement();
 				if (s != null) {
-					stmts.add(statement());
+					stmts.add(s);
 				}
 			}
 			
-			Token previous = previous();
-			if (previous.match(Type.RIGHT_BRACE))
+			if (match(Type.RIGHT_BRACE))
 			{
-				return new BlockStmt(opening, previous, stmts);
+				return new BlockStmt(opening, previous(), stmts);
 			}
 			throw error(opening, "Expect } for block statement.");
 		}
@@ -197,7 +269,7 @@ public class Parser {
 		if (match(Type.IDENTIFIER)) {
 			return new Variable(previous());
 		}
-		Lox.error(peek().getLine(), "Parsing error: primary expected.");
+		errors.error(peek().getLine(), "Parsing error: primary expected.");
 		return null;
 	}
 
@@ -219,6 +291,7 @@ public class Parser {
 			case PRINT:
 				return;
 			default:
+				advance();
 				break;
 			}
 		}
@@ -242,21 +315,22 @@ public class Parser {
 
 	protected Token advance() {
 		if (!eof()) {
-			current++;
+			previous = current;
+			current = tokens.next();
 		}
 		return peek();
 	}
 
 	protected Token previous() {
-		if (current <= 0) {
+		if (previous == null) {
 			System.err.println("Index out of bound during parsing.");
 			System.exit(67);
 		}
-		return tokens.get(current - 1);
+		return previous;
 	}
 
 	protected Token peek() {
-		return tokens.get(current);
+		return current;
 	}
 
 	protected boolean eof() {
@@ -264,7 +338,7 @@ public class Parser {
 	}
 
 	protected ParserError error(Token token, String message) {
-		Lox.error(token.getLine(), message);
-		return new ParserError();
+		errors.error(token.getLine(), message);
+		return ERROR;
 	}
 }
@@ -1,10 +1,17 @@
 package learn.craftinginterpreters.lox.parser;
 
 import learn.craftinginterpreters.lox.lexer.Token;
+import learn.craftinginterpreters.lox.lexer.Type;
 
 public class Unary implements Expr {
+
 	final Token operator;
 	final Expr right;
+	/**
+	 * Behavior of the node, opaque to the parser, rewritten at runtime by the
+	 * interpreter into a version specialized on the operand types seen so far.
+	 */
+	Object operation;
 
 	public Unary(Token operator, Expr right) {
 		this.operator = operator;
@@ -15,6 +22,11 @@ public class Unary implements Expr {
 		return visitor.visit(this);
 	}
 
+	@Override
+	public boolean isNumeric() {
+		return operator.match(Type.MINUS);
+	}
+
 	public Token getOperator() {
 		return this.operator;
 	}
@@ -22,4 +34,17 @@ public class Unary implements Expr {
 	public Expr getRight() {
 		return this.right;
 	}
+
+	public Object getOperation() {
+		return operation;
+	}
+
+	/**
+	 * Replace the operation of the node, with a plain write racing those of the
+	 * other threads running the same script, so the operation must be
+	 * immutable.
+	 */
+	public void specialize(Object operation) {
+		this.operation = operation;
+	}
 }
@@ -6,6 +6,7 @@ public class VarDeclareStmt implements Stmt {
 
 	final Token var;
 	final Expr initializer;
+	int slot = -1;
 	
 	public VarDeclareStmt(Token var, Expr initializer) {
 		this.var = var;
@@ -24,4 +25,21 @@ public class VarDeclareStmt implements Stmt {
 	public Expr getInitializer() {
 		return initializer;
 	}
+
+	/**
+	 * Bind the declared variable to a slot of its enclosing block.
+	 * 
+	 * @param slot - index of the variable in the block scope
+	 */
+	public void resolve(int slot) {
+		this.slot = slot;
+	}
+
+	/**
+	 * @return slot of the declared variable, or -1 when it is global or could not
+	 *         be bound because it redeclares a visible local
+	 */
+	public int getSlot() {
+		return slot;
+	}
 }
@@ -5,6 +5,13 @@ import learn.craftinginterpreters.lox.lexer.Token;
 public class Variable implements Expr {
 
 	final Token identifier;
+	int depth = -1;
+	int slot = -1;
+	/**
+	 * Behavior of the node, opaque to the parser, rewritten at runtime by the
+	 * interpreter into a version specialized on the binding of the variable.
+	 */
+	Object operation;
 	
 	public Variable(Token identifier) {
 		this.identifier = identifier;
@@ -18,4 +25,39 @@ public class Variable implements Expr {
 	public Token getIdentifier() {
 		return identifier;
 	}
+
+	/**
+	 * Bind this variable to a local slot.
+	 * 
+	 * @param depth - number of enclosing scopes to walk up
+	 * @param slot  - index of the variable in that scope
+	 */
+	public void resolve(int depth, int slot) {
+		this.depth = depth;
+		this.slot = slot;
+	}
+
+	/**
+	 * @return scope distance of the binding, or -1 for a global variable
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	public int getSlot() {
+		return slot;
+	}
+
+	public Object getOperation() {
+		return operation;
+	}
+
+	/**
+	 * Replace the operation of the node, with a plain write racing those of the
+	 * other threads running the same script, so the operation must be
+	 * immutable.
+	 */
+	public void specialize(Object operation) {
+		this.operation = operation;
+	}
 }
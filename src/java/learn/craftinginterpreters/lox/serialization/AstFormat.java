@@ -0,0 +1,51 @@
+package learn.craftinginterpreters.lox.serialization;
+
+/**
+ * Layout of an AST image, a binary encoding of parsed statements. All numbers
+ * are big-endian.
+ *
+ * <pre>
+ * header:  magic u32, version u16, source size u64, source modification time u64
+ * strings: count varint, then for each: length varint, UTF-8 bytes
+ * body:    statement count varint, then the statements in pre-order
+ * </pre>
+ *
+ * A node is its tag byte followed by its operands in field order. A token is
+ * its type ordinal byte, the index of its lexeme in the strings, and the line
+ * as a zigzag varint delta from the line of the previous token, so that the
+ * tokens form a compact line table.
+ */
+final class AstFormat {
+
+	// "LOXA"
+	static final int MAGIC = 0x4C4F5841;
+	// bumped on any change of the layout or of the tags
+	static final short VERSION = 1;
+
+	// statements
+	static final byte EXPRESSION_STMT = 1;
+	static final byte PRINT_STMT = 2;
+	static final byte VAR_DECLARE_STMT = 3;
+	static final byte BLOCK_STMT = 4;
+
+	// expressions
+	static final byte BINARY = 16;
+	static final byte TERNARY = 17;
+	static final byte GROUPING = 18;
+	static final byte UNARY = 19;
+	static final byte VARIABLE = 20;
+	static final byte ASSIGNMENT = 21;
+
+	// literals, by type of value
+	static final byte NIL = 32;
+	static final byte TRUE = 33;
+	static final byte FALSE = 34;
+	static final byte NUMBER = 35;
+	static final byte STRING = 36;
+
+	// variable declaration without initializer
+	static final byte NO_INITIALIZER = 0;
+
+	private AstFormat() {
+	}
+}
@@ -0,0 +1,78 @@
+package learn.craftinginterpreters.lox.serialization;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+import learn.craftinginterpreters.lox.parser.Stmt;
+
+/**
+ * AST images saved next to script files, so that a script run again is loaded
+ * from its image instead of being lexed and parsed. The image of script.lox is
+ * script.loxc; it records the size and modification time of the script and is
+ * ignored once the script changes.
+ */
+public final class AstImage {
+
+	private AstImage() {
+	}
+
+	/**
+	 * @return path of the image of the script
+	 */
+	public static Path of(Path script) {
+		return script.resolveSibling(script.getFileName() + "c");
+	}
+
+	/**
+	 * Read the image of the script, mapping it in memory.
+	 * 
+	 * @param sourceSize     - current size of the script file
+	 * @param sourceModified - current modification time of the script, in millis
+	 * @return statements of the script, or null when there is no image up to date
+	 *         with the script
+	 */
+	public static List<Stmt> read(Path script, long sourceSize, long sourceModified) {
+		try (FileChannel channel = FileChannel.open(of(script))) {
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			AstReader reader = new AstReader(buffer);
+			if (!reader.readHeader(sourceSize, sourceModified)) {
+				return null;
+			}
+			return reader.read();
+		} catch (IOException e) {
+			// missing, unreadable or corrupted, to be written again
+			return null;
+		}
+	}
+
+	/**
+	 * Save the image of the script, replacing any previous one.
+	 * 
+	 * @param sourceSize     - size of the script file the statements come from
+	 * @param sourceModified - modification time of that script file, in millis
+	 */
+	public static void write(Path script, long sourceSize, long sourceModified, List<Stmt> statements)
+			throws IOException {
+		byte[] image = new AstWriter().write(statements, sourceSize, sourceModified);
+		Path target = of(script);
+		// written aside first so that a concurrent run never reads half an image
+		Path temp = target.resolveSibling(
+				target.getFileName() + "." + ProcessHandle.current().pid() + "-" + Thread.currentThread().getId() + ".tmp");
+		try {
+			Files.write(temp, image);
+			try {
+				Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+}
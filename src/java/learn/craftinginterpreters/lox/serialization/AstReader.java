@@ -0,0 +1,174 @@
+package learn.craftinginterpreters.lox.serialization;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import learn.craftinginterpreters.lox.lexer.Token;
+import learn.craftinginterpreters.lox.lexer.Type;
+import learn.craftinginterpreters.lox.parser.Assignment;
+import learn.craftinginterpreters.lox.parser.Binary;
+import learn.craftinginterpreters.lox.parser.BlockStmt;
+import learn.craftinginterpreters.lox.parser.Expr;
+import learn.craftinginterpreters.lox.parser.ExpressionStmt;
+import learn.craftinginterpreters.lox.parser.Grouping;
+import learn.craftinginterpreters.lox.parser.Literal;
+import learn.craftinginterpreters.lox.parser.PrintStmt;
+import learn.craftinginterpreters.lox.parser.Stmt;
+import learn.craftinginterpreters.lox.parser.Ternary;
+import learn.craftinginterpreters.lox.parser.Unary;
+import learn.craftinginterpreters.lox.parser.VarDeclareStmt;
+import learn.craftinginterpreters.lox.parser.Variable;
+
+/**
+ * Decode the statements of an image laid out as described by
+ * {@link AstFormat}, straight from a buffer such as a mapped file.
+ */
+class AstReader {
+
+	private static final Type[] TYPES = Type.values();
+
+	private final ByteBuffer buffer;
+	private String[] strings;
+	private int line;
+
+	AstReader(ByteBuffer buffer) {
+		this.buffer = buffer;
+		this.line = 0;
+	}
+
+	/**
+	 * @return whether the image has the current version and was written for
+	 *         the script file in its current state
+	 */
+	boolean readHeader(long sourceSize, long sourceModified) {
+		if (buffer.remaining() < 22 || buffer.getInt() != AstFormat.MAGIC) {
+			return false;
+		}
+		return buffer.getShort() == AstFormat.VERSION && buffer.getLong() == sourceSize
+				&& buffer.getLong() == sourceModified;
+	}
+
+	/**
+	 * Read the statements, once the header has been read.
+	 * 
+	 * @throws IOException when the image is corrupted
+	 */
+	List<Stmt> read() throws IOException {
+		try {
+			strings = new String[readVarint()];
+			for (int i = 0; i < strings.length; i++) {
+				byte[] utf8 = new byte[readVarint()];
+				buffer.get(utf8);
+				strings[i] = new String(utf8, StandardCharsets.UTF_8);
+			}
+
+			int count = readVarint();
+			List<Stmt> statements = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				statements.add(statement());
+			}
+			if (buffer.hasRemaining()) {
+				throw new IOException("Trailing bytes in AST image.");
+			}
+			return statements;
+		} catch (RuntimeException e) {
+			// out of bounds index or read, unknown tag
+			throw new IOException("Corrupted AST image.", e);
+		}
+	}
+
+	private Stmt statement() throws IOException {
+		byte tag = buffer.get();
+		switch (tag) {
+		case AstFormat.EXPRESSION_STMT:
+			return new ExpressionStmt(expression());
+		case AstFormat.PRINT_STMT:
+			return new PrintStmt(expression());
+		case AstFormat.VAR_DECLARE_STMT: {
+			Token identifier = token();
+			Expr init = null;
+			if (buffer.get(buffer.position()) != AstFormat.NO_INITIALIZER) {
+				init = expression();
+			} else {
+				buffer.get();
+			}
+			return new VarDeclareStmt(identifier, init);
+		}
+		case AstFormat.BLOCK_STMT: {
+			Token opening = token();
+			Token closing = token();
+			int count = readVarint();
+			List<Stmt> statements = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				statements.add(statement());
+			}
+			return new BlockStmt(opening, closing, statements);
+		}
+		default:
+			throw new IOException("Unknown statement tag " + tag + " in AST image.");
+		}
+	}
+
+	private Expr expression() throws IOException {
+		byte tag = buffer.get();
+		switch (tag) {
+		case AstFormat.BINARY: {
+			Expr left = expression();
+			Token operator = token();
+			return new Binary(left, operator, expression());
+		}
+		case AstFormat.TERNARY: {
+			Expr cond = expression();
+			Expr left = expression();
+			return new Ternary(cond, left, expression());
+		}
+		case AstFormat.GROUPING:
+			return new Grouping(expression());
+		case AstFormat.UNARY: {
+			Token operator = token();
+			return new Unary(operator, expression());
+		}
+		case AstFormat.VARIABLE:
+			return new Variable(token());
+		case AstFormat.ASSIGNMENT: {
+			Token identifier = token();
+			return new Assignment(identifier, expression());
+		}
+		case AstFormat.NIL:
+			return new Literal(null);
+		case AstFormat.TRUE:
+			return new Literal(true);
+		case AstFormat.FALSE:
+			return new Literal(false);
+		case AstFormat.NUMBER:
+			return new Literal(buffer.getDouble());
+		case AstFormat.STRING:
+			return new Literal(strings[readVarint()]);
+		default:
+			throw new IOException("Unknown expression tag " + tag + " in AST image.");
+		}
+	}
+
+	private Token token() {
+		Type type = TYPES[buffer.get()];
+		String lexeme = strings[readVarint()];
+		int zigzag = readVarint();
+		line += (zigzag >>> 1) ^ -(zigzag & 1);
+		return new Token(type, lexeme, null, line);
+	}
+
+	private int readVarint() {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			byte b = buffer.get();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new IllegalStateException("Malformed varint.");
+	}
+}
@@ -0,0 +1,244 @@
+package learn.craftinginterpreters.lox.serialization;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import learn.craftinginterpreters.lox.lexer.Token;
+import learn.craftinginterpreters.lox.parser.Assignment;
+import learn.craftinginterpreters.lox.parser.Binary;
+import learn.craftinginterpreters.lox.parser.BlockStmt;
+import learn.craftinginterpreters.lox.parser.Expr;
+import learn.craftinginterpreters.lox.parser.ExpressionStmt;
+import learn.craftinginterpreters.lox.parser.Grouping;
+import learn.craftinginterpreters.lox.parser.Literal;
+import learn.craftinginterpreters.lox.parser.PrintStmt;
+import learn.craftinginterpreters.lox.parser.Stmt;
+import learn.craftinginterpreters.lox.parser.Ternary;
+import learn.craftinginterpreters.lox.parser.Unary;
+import learn.craftinginterpreters.lox.parser.VarDeclareStmt;
+import learn.craftinginterpreters.lox.parser.Variable;
+
+/**
+ * Encode statements into an image laid out as described by {@link AstFormat}.
+ * Variable bindings are not written, statements get resolved again once read.
+ */
+class AstWriter implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+
+	private final ByteArrayOutputStream bytes;
+	private final DataOutputStream body;
+	private final Map<String, Integer> indexes;
+	private final List<String> strings;
+	private int line;
+
+	AstWriter() {
+		bytes = new ByteArrayOutputStream(1 << 12);
+		body = new DataOutputStream(bytes);
+		indexes = new HashMap<>();
+		strings = new ArrayList<>();
+		line = 0;
+	}
+
+	/**
+	 * @param statements     - statements of the script
+	 * @param sourceSize     - size of the script file
+	 * @param sourceModified - modification time of the script file, in millis
+	 * @return the image of the statements
+	 */
+	byte[] write(List<Stmt> statements, long sourceSize, long sourceModified) {
+		try {
+			writeVarint(body, statements.size());
+			for (Stmt statement : statements) {
+				statement.accept(this);
+			}
+
+			ByteArrayOutputStream image = new ByteArrayOutputStream(bytes.size() + (1 << 10));
+			DataOutputStream out = new DataOutputStream(image);
+			out.writeInt(AstFormat.MAGIC);
+			out.writeShort(AstFormat.VERSION);
+			out.writeLong(sourceSize);
+			out.writeLong(sourceModified);
+			writeVarint(out, strings.size());
+			for (String string : strings) {
+				byte[] utf8 = string.getBytes(StandardCharsets.UTF_8);
+				writeVarint(out, utf8.length);
+				out.write(utf8);
+			}
+			bytes.writeTo(out);
+			return image.toByteArray();
+		} catch (IOException e) {
+			// in-memory streams do not fail
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/*
+	 * EXPRESSION VISITOR METHODS
+	 */
+
+	@Override
+	public Void visit(Binary expr) {
+		writeByte(AstFormat.BINARY);
+		write(expr.getLeft());
+		write(expr.getOperator());
+		write(expr.getRight());
+		return null;
+	}
+
+	@Override
+	public Void visit(Ternary expr) {
+		writeByte(AstFormat.TERNARY);
+		write(expr.getCond());
+		write(expr.getLeft());
+		write(expr.getRight());
+		return null;
+	}
+
+	@Override
+	public Void visit(Grouping expr) {
+		writeByte(AstFormat.GROUPING);
+		write(expr.getExpr());
+		return null;
+	}
+
+	@Override
+	public Void visit(Literal expr) {
+		Object value = expr.getValue();
+		try {
+			if (value == null) {
+				body.writeByte(AstFormat.NIL);
+			} else if (value instanceof Boolean) {
+				body.writeByte((boolean) value ? AstFormat.TRUE : AstFormat.FALSE);
+			} else if (value instanceof Double) {
+				body.writeByte(AstFormat.NUMBER);
+				body.writeDouble((double) value);
+			} else {
+				body.writeByte(AstFormat.STRING);
+				writeVarint(body, indexOf(value.toString()));
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return null;
+	}
+
+	@Override
+	public Void visit(Unary expr) {
+		writeByte(AstFormat.UNARY);
+		write(expr.getOperator());
+		write(expr.getRight());
+		return null;
+	}
+
+	@Override
+	public Void visit(Variable expr) {
+		writeByte(AstFormat.VARIABLE);
+		write(expr.getIdentifier());
+		return null;
+	}
+
+	@Override
+	public Void visit(Assignment expr) {
+		writeByte(AstFormat.ASSIGNMENT);
+		write(expr.getIdentifier());
+		write(expr.getValue());
+		return null;
+	}
+
+	/*
+	 * STATEMENT VISITOR METHODS
+	 */
+
+	@Override
+	public Void visit(ExpressionStmt stmt) {
+		writeByte(AstFormat.EXPRESSION_STMT);
+		write(stmt.getExpression());
+		return null;
+	}
+
+	@Override
+	public Void visit(PrintStmt stmt) {
+		writeByte(AstFormat.PRINT_STMT);
+		write(stmt.getExpression());
+		return null;
+	}
+
+	@Override
+	public Void visit(VarDeclareStmt stmt) {
+		writeByte(AstFormat.VAR_DECLARE_STMT);
+		write(stmt.getIdentifier());
+		Expr init = stmt.getInitializer();
+		if (init != null) {
+			write(init);
+		} else {
+			writeByte(AstFormat.NO_INITIALIZER);
+		}
+		return null;
+	}
+
+	@Override
+	public Void visit(BlockStmt block) {
+		writeByte(AstFormat.BLOCK_STMT);
+		write(block.getOpening());
+		write(block.getClosing());
+		List<Stmt> statements = new ArrayList<>();
+		block.getStatements().forEach(statements::add);
+		writeVarint(statements.size());
+		for (Stmt statement : statements) {
+			statement.accept(this);
+		}
+		return null;
+	}
+
+	private void write(Expr expr) {
+		expr.accept(this);
+	}
+
+	private void write(Token token) {
+		writeByte((byte) token.getType().ordinal());
+		writeVarint(indexOf(token.getLexem()));
+		int delta = token.getLine() - line;
+		line = token.getLine();
+		writeVarint((delta << 1) ^ (delta >> 31));
+	}
+
+	private int indexOf(String string) {
+		Integer index = indexes.get(string);
+		if (index == null) {
+			index = strings.size();
+			indexes.put(string, index);
+			strings.add(string);
+		}
+		return index;
+	}
+
+	private void writeByte(byte b) {
+		try {
+			body.writeByte(b);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void writeVarint(int value) {
+		try {
+			writeVarint(body, value);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static void writeVarint(DataOutputStream out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+}
@@ -0,0 +1,274 @@
+package learn.craftinginterpreters.lox.vm;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import learn.craftinginterpreters.lox.RuntimeError;
+import learn.craftinginterpreters.lox.compiler.Chunk;
+import learn.craftinginterpreters.lox.compiler.OpCode;
+import learn.craftinginterpreters.lox.interpreter.Interpreter;
+import learn.craftinginterpreters.lox.interpreter.Output;
+import learn.craftinginterpreters.lox.interpreter.Rope;
+import learn.craftinginterpreters.lox.lexer.Symbol;
+
+/**
+ * Operand stack virtual machine executing a {@link Chunk}. Its behavior mirrors
+ * the tree-walking {@link Interpreter}, including the runtime error messages.
+ *
+ * Globals outlive a single chunk so that the REPL keeps its variables.
+ */
+public class VM {
+
+	private final Map<Symbol, Object> globals;
+	private Object[] stack;
+	private int top;
+	private final Output out;
+
+	/**
+	 * VM printing to the standard output.
+	 */
+	public VM() {
+		this(new Output());
+	}
+
+	public VM(Output out) {
+		this.out = out;
+		globals = new HashMap<>();
+		stack = new Object[256];
+		top = 0;
+	}
+
+	public Output getOutput() {
+		return out;
+	}
+
+	public void interpret(Chunk chunk) {
+		try {
+			run(chunk);
+		} finally {
+			Arrays.fill(stack, 0, top, null);
+			top = 0;
+		}
+	}
+
+	private void run(Chunk chunk) {
+		final byte[] code = chunk.getCode();
+		int ip = 0;
+		while (true) {
+			int offset = ip;
+			byte op = code[ip++];
+			switch (op) {
+			case OpCode.CONSTANT:
+				push(chunk.getConstant(readShort(code, ip)));
+				ip += 2;
+				break;
+			case OpCode.NIL:
+				push(null);
+				break;
+			case OpCode.TRUE:
+				push(true);
+				break;
+			case OpCode.FALSE:
+				push(false);
+				break;
+
+			case OpCode.POP:
+				stack[--top] = null;
+				break;
+			case OpCode.POPN: {
+				int count = readShort(code, ip);
+				ip += 2;
+				Arrays.fill(stack, top - count, top, null);
+				top -= count;
+				break;
+			}
+
+			case OpCode.GET_LOCAL:
+				push(stack[readShort(code, ip)]);
+				ip += 2;
+				break;
+			case OpCode.SET_LOCAL:
+				stack[readShort(code, ip)] = stack[top - 1];
+				ip += 2;
+				break;
+			case OpCode.GET_GLOBAL: {
+				Symbol name = (Symbol) chunk.getConstant(readShort(code, ip));
+				ip += 2;
+				if (!globals.containsKey(name)) {
+					throw error(chunk, offset, "Undefined variable " + name);
+				}
+				push(globals.get(name));
+				break;
+			}
+			case OpCode.SET_GLOBAL: {
+				Symbol name = (Symbol) chunk.getConstant(readShort(code, ip));
+				ip += 2;
+				if (!globals.containsKey(name)) {
+					throw error(chunk, offset, "Undeclared variable " + name);
+				}
+				globals.put(name, stack[top - 1]);
+				break;
+			}
+			case OpCode.DEFINE_GLOBAL: {
+				Symbol name = (Symbol) chunk.getConstant(readShort(code, ip));
+				ip += 2;
+				globals.put(name, pop());
+				break;
+			}
+			case OpCode.CHECK_UNDECLARED: {
+				Symbol name = (Symbol) chunk.getConstant(readShort(code, ip));
+				ip += 2;
+				if (globals.containsKey(name)) {
+					throw error(chunk, offset, "Variable has been declared: " + name);
+				}
+				break;
+			}
+			case OpCode.REDECLARED: {
+				Symbol name = (Symbol) chunk.getConstant(readShort(code, ip));
+				throw error(chunk, offset, "Variable has been declared: " + name);
+			}
+
+			case OpCode.EQUAL: {
+				Object right = pop();
+				Object left = pop();
+				push(Interpreter.isEqual(left, right));
+				break;
+			}
+			case OpCode.NOT_EQUAL: {
+				Object right = pop();
+				Object left = pop();
+				push(!Interpreter.isEqual(left, right));
+				break;
+			}
+			case OpCode.GREATER:
+			case OpCode.GREATER_EQUAL:
+			case OpCode.LESS:
+			case OpCode.LESS_EQUAL: {
+				Object right = pop();
+				Object left = pop();
+				int compare = compare(chunk, offset, left, right);
+				switch (op) {
+				case OpCode.GREATER:
+					push(compare > 0);
+					break;
+				case OpCode.GREATER_EQUAL:
+					push(compare >= 0);
+					break;
+				case OpCode.LESS:
+					push(compare < 0);
+					break;
+				default:
+					push(compare <= 0);
+				}
+				break;
+			}
+			case OpCode.ADD: {
+				Object right = pop();
+				Object left = pop();
+				if (left instanceof Double && right instanceof Double) {
+					push((double) left + (double) right);
+				} else if (left instanceof CharSequence || right instanceof CharSequence) {
+					push(Rope.concat(left, right));
+				} else {
+					throw error(chunk, offset, "Operands must be either Double or String");
+				}
+				break;
+			}
+			case OpCode.SUBTRACT: {
+				Object right = pop();
+				Object left = pop();
+				checkNumbers(chunk, offset, left, right);
+				push((double) left - (double) right);
+				break;
+			}
+			case OpCode.MULTIPLY: {
+				Object right = pop();
+				Object left = pop();
+				checkNumbers(chunk, offset, left, right);
+				push((double) left * (double) right);
+				break;
+			}
+			case OpCode.DIVIDE: {
+				Object right = pop();
+				Object left = pop();
+				checkNumbers(chunk, offset, left, right);
+				push((double) left / (double) right);
+				break;
+			}
+			case OpCode.NOT:
+				push(!Interpreter.truthy(pop()));
+				break;
+			case OpCode.NEGATE: {
+				Object operand = pop();
+				if (!(operand instanceof Double)) {
+					throw error(chunk, offset, "Operand must be number!");
+				}
+				push(-(double) operand);
+				break;
+			}
+
+			case OpCode.PRINT: {
+				Object value = pop();
+				if (value instanceof Double) {
+					out.println((double) value);
+				} else {
+					out.println(value.toString());
+				}
+				break;
+			}
+			case OpCode.JUMP:
+				ip += 2 + readShort(code, ip);
+				break;
+			case OpCode.JUMP_IF_FALSE:
+				if (Interpreter.truthy(pop())) {
+					ip += 2;
+				} else {
+					ip += 2 + readShort(code, ip);
+				}
+				break;
+			case OpCode.RETURN:
+				return;
+			default:
+				throw error(chunk, offset, "Unknown opcode " + op);
+			}
+		}
+	}
+
+	private int compare(Chunk chunk, int offset, Object left, Object right) {
+		if (left instanceof Double && right instanceof Double) {
+			return ((Double) left).compareTo((Double) right);
+		} else if (left instanceof CharSequence && right instanceof CharSequence) {
+			return left.toString().compareTo(right.toString());
+		}
+		throw error(chunk, offset, "Uncomparable objects " + left.toString() + " vs " + right.toString());
+	}
+
+	private void checkNumbers(Chunk chunk, int offset, Object left, Object right) {
+		if (left instanceof Double && right instanceof Double) {
+			return;
+		}
+		throw error(chunk, offset, "Operands must be number!");
+	}
+
+	private static int readShort(byte[] code, int ip) {
+		return ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+	}
+
+	private void push(Object value) {
+		if (top == stack.length) {
+			stack = Arrays.copyOf(stack, top * 2);
+		}
+		stack[top++] = value;
+	}
+
+	private Object pop() {
+		Object value = stack[--top];
+		stack[top] = null;
+		return value;
+	}
+
+	private RuntimeError error(Chunk chunk, int offset, String message) {
+		return new RuntimeError(chunk.getLine(offset), message);
+	}
+}